@@ -0,0 +1,55 @@
+package com.dbs.celerity.queryrunner.service.cluster;
+
+import com.netflix.config.DynamicIntProperty;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+
+/**
+ * Routes per-query requests to the node running the query.
+ * Registered ahead of other interceptors, so rate limits only count a forwarded request on the node handling it.
+ */
+@Configuration
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ClusterConfig implements WebMvcConfigurer {
+    private static final DynamicIntProperty CONNECT_TIMEOUT_MS = new DynamicIntProperty("cluster.forward.connect-timeout-ms", 2000);
+    private static final DynamicIntProperty SOCKET_TIMEOUT_MS = new DynamicIntProperty("cluster.forward.socket-timeout-ms", 30000);
+
+    private final ClusterCoordinator clusterCoordinator;
+    private final CloseableHttpClient httpClient;
+
+    @Autowired
+    public ClusterConfig(ClusterCoordinator clusterCoordinator) {
+        this.clusterCoordinator = clusterCoordinator;
+        // bounded, so a hung owner fails over to local handling instead of holding request threads
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT_MS.get())
+                .setConnectionRequestTimeout(CONNECT_TIMEOUT_MS.get())
+                .setSocketTimeout(SOCKET_TIMEOUT_MS.get())
+                .build();
+        this.httpClient = HttpClients.custom().setMaxConnTotal(50).setMaxConnPerRoute(20)
+                .setDefaultRequestConfig(requestConfig).build();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new QueryRoutingInterceptor(clusterCoordinator, ClusterCoordinator.QUERY, httpClient))
+                .addPathPatterns("/query/cancel/*", "/query/result/*", "/query/download/*");
+        registry.addInterceptor(new QueryRoutingInterceptor(clusterCoordinator, ClusterCoordinator.S3_QUERY, httpClient))
+                .addPathPatterns("/s3query/cancel/*", "/s3query/result/*", "/s3query/download/*");
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        httpClient.close();
+    }
+}
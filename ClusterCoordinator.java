@@ -0,0 +1,425 @@
+package com.dbs.celerity.queryrunner.service.cluster;
+
+import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicStringProperty;
+import org.apache.zookeeper.*;
+import org.apache.zookeeper.data.ACL;
+import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+
+/**
+ * Coordinates query runner replicas through ZooKeeper:
+ * <ul>
+ *     <li>Records which node runs each query, so requests landing elsewhere can be routed to it.</li>
+ *     <li>Elects a leader that decides when S3 metadata is refreshed, and signals every node to refresh.</li>
+ * </ul>
+ * Without {@code cluster.zookeeper.connect}, node behaves standalone: every query is local and the node
+ * is its own leader. While ZooKeeper is unreachable, queries stay local and no node leads.
+ * <p>
+ * Requests are only routed to owners that are live cluster members, and with
+ * {@code cluster.zookeeper.digest} set every znode is readable and writable by cluster nodes only.
+ */
+@Service
+public class ClusterCoordinator implements Watcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+    public static final String QUERY = "query";
+    public static final String S3_QUERY = "s3query";
+
+    private static final DynamicStringProperty CONNECT = new DynamicStringProperty("cluster.zookeeper.connect", null);
+    private static final DynamicStringProperty ROOT = new DynamicStringProperty("cluster.zookeeper.root", "/celerity-query-runner");
+    private static final DynamicIntProperty SESSION_TIMEOUT_MS = new DynamicIntProperty("cluster.zookeeper.session-timeout-ms", 30000);
+    private static final DynamicStringProperty NODE_URL = new DynamicStringProperty("cluster.node.url", null);
+    private static final DynamicStringProperty DIGEST = new DynamicStringProperty("cluster.zookeeper.digest", null);
+    private static final DynamicIntProperty OWNERSHIP_HOURS = new DynamicIntProperty("cluster.ownership.hours", 24);
+    private static final DynamicIntProperty OWNERSHIP_MAX = new DynamicIntProperty("cluster.ownership.max-queries", 10000);
+    private static final long SWEEP_MINUTES = 10;
+
+    private final String connectString;
+    private final String nodeUrl;
+    private final int sessionTimeout;
+    private final String queriesPath;
+    private final String electionPath;
+    private final String refreshPath;
+    private final String digest;
+    private final List<ACL> acl;
+
+    // path of owned query znode to time it was registered
+    private final Map<String, Long> ownedQueries = new ConcurrentHashMap<>();
+    private final List<Runnable> refreshCallbacks = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService sessionExecutor = Executors.newSingleThreadScheduledExecutor();
+    private volatile Set<String> memberUrls = Collections.emptySet();
+
+    private volatile ZooKeeper zooKeeper;
+    private volatile long initializedSession;
+    private volatile String electionNode;
+    private volatile boolean leader;
+
+    public ClusterCoordinator() {
+        this(CONNECT.get(), isNull(NODE_URL.get()) ? defaultNodeUrl() : NODE_URL.get(), SESSION_TIMEOUT_MS.get(), ROOT.get(),
+                DIGEST.get());
+    }
+
+    /**
+     * @param connectString  ZooKeeper connection string, null to run standalone.
+     * @param nodeUrl        base URL other nodes use to reach this node.
+     * @param sessionTimeout ZooKeeper session timeout, in milliseconds.
+     * @param root           parent znode of everything written by coordinator.
+     * @param digest         {@code user:password} shared by cluster nodes to restrict znodes to them, or null.
+     */
+    ClusterCoordinator(String connectString, String nodeUrl, int sessionTimeout, String root, String digest) {
+        this.connectString = connectString;
+        this.nodeUrl = nodeUrl;
+        this.sessionTimeout = sessionTimeout;
+        this.queriesPath = root + "/queries";
+        this.electionPath = root + "/leader";
+        this.refreshPath = root + "/s3-refresh";
+        this.digest = digest;
+        this.acl = isNull(digest) ? ZooDefs.Ids.OPEN_ACL_UNSAFE : ZooDefs.Ids.CREATOR_ALL_ACL;
+
+        if(!isNull(connectString)) {
+            if(isNull(digest)) {
+                LOGGER.warn("No {} set, znodes of this cluster are writable by any ZooKeeper client", DIGEST.getName());
+            }
+            connect();
+            sessionExecutor.scheduleWithFixedDelay(this::expireOwnership, SWEEP_MINUTES, SWEEP_MINUTES, TimeUnit.MINUTES);
+        } else {
+            LOGGER.info("No ZooKeeper configured, running standalone");
+        }
+    }
+
+    public String getNodeUrl() {
+        return nodeUrl;
+    }
+
+    /**
+     * @return true if connected to ZooKeeper.
+     */
+    public boolean isClustered() {
+        ZooKeeper zk = zooKeeper;
+        return !isNull(zk) && zk.getState().isConnected();
+    }
+
+    /**
+     * @return true if this node decides when shared work like S3 metadata refresh runs. Always true when standalone,
+     * never while disconnected, as another node may have been elected meanwhile.
+     */
+    public boolean isLeader() {
+        return isNull(connectString) || (leader && isClustered());
+    }
+
+    /**
+     * Records this node as owner of query, for as long as this node's session lives, at most
+     * {@code cluster.ownership.hours}. Beyond {@code cluster.ownership.max-queries} owned queries,
+     * oldest ones are dropped.
+     *
+     * @param kind type of query, {@link #QUERY} or {@link #S3_QUERY}.
+     * @param id   ID of query.
+     */
+    public void registerQuery(String kind, String id) {
+        String path = queriesPath + "/" + kind + "/" + id;
+        ownedQueries.put(path, System.currentTimeMillis());
+        if(isClustered()) {
+            createOwnership(path);
+        }
+        int excess = ownedQueries.size() - OWNERSHIP_MAX.get();
+        if(excess > 0) {
+            ownedQueries.entrySet().stream()
+                    .sorted(Map.Entry.comparingByValue())
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList())
+                    .forEach(this::removeOwnership);
+        }
+    }
+
+    public void unregisterQuery(String kind, String id) {
+        removeOwnership(queriesPath + "/" + kind + "/" + id);
+    }
+
+    private void removeOwnership(String path) {
+        if(isNull(ownedQueries.remove(path)) || !isClustered()) {
+            return;
+        }
+        try {
+            zooKeeper.delete(path, -1);
+        } catch(KeeperException.NoNodeException e) {
+            // already gone with an expired session
+        } catch(KeeperException | InterruptedException e) {
+            LOGGER.warn("Unable to remove ownership of {}", path, e);
+        }
+    }
+
+    /**
+     * Looks up node running query. Owners that are not live cluster members are ignored, so requests
+     * and their credentials are never sent to a URL merely written into ZooKeeper.
+     *
+     * @return Base URL of owning node, if query is owned by another node.
+     */
+    public Optional<String> findRemoteOwner(String kind, String id) {
+        String path = queriesPath + "/" + kind + "/" + id;
+        if(ownedQueries.containsKey(path) || !isClustered()) {
+            return Optional.empty();
+        }
+        try {
+            String owner = new String(zooKeeper.getData(path, false, null), UTF_8);
+            if(nodeUrl.equals(owner)) {
+                return Optional.empty();
+            }
+            if(!memberUrls.contains(owner) && !readMembers().contains(owner)) {
+                LOGGER.warn("Owner {} of {} is not a cluster member, handling locally", owner, path);
+                return Optional.empty();
+            }
+            return Optional.of(owner);
+        } catch(KeeperException.NoNodeException e) {
+            return Optional.empty();
+        } catch(KeeperException | InterruptedException e) {
+            LOGGER.warn("Unable to look up owner of {}", path, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Registers task to run on every node whenever a refresh is published.
+     */
+    public void onRefresh(Runnable callback) {
+        refreshCallbacks.add(callback);
+    }
+
+    /**
+     * Signals every node to run its refresh callbacks. Runs them locally only when standalone.
+     */
+    public void publishRefresh() {
+        if(!isClustered()) {
+            runRefreshCallbacks();
+            return;
+        }
+        try {
+            zooKeeper.setData(refreshPath, String.valueOf(System.currentTimeMillis()).getBytes(UTF_8), -1);
+        } catch(KeeperException | InterruptedException e) {
+            LOGGER.warn("Unable to publish refresh, refreshing this node only", e);
+            runRefreshCallbacks();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        sessionExecutor.shutdownNow();
+        if(!isNull(zooKeeper)) {
+            zooKeeper.close();
+        }
+    }
+
+    @Override
+    public void process(WatchedEvent event) {
+        if(event.getType() == Event.EventType.None) {
+            if(event.getState() == Event.KeeperState.SyncConnected) {
+                sessionExecutor.execute(this::initSession);
+            } else if(event.getState() == Event.KeeperState.Expired) {
+                LOGGER.warn("ZooKeeper session expired, reconnecting");
+                leader = false;
+                sessionExecutor.execute(this::connect);
+            }
+        } else if(electionPath.equals(event.getPath())) {
+            sessionExecutor.execute(this::checkLeadership);
+        } else if(refreshPath.equals(event.getPath())) {
+            sessionExecutor.execute(() -> {
+                watchRefresh();
+                runRefreshCallbacks();
+            });
+        }
+    }
+
+    /**
+     * @return Current ZooKeeper client, for tests.
+     */
+    ZooKeeper getZooKeeper() {
+        return zooKeeper;
+    }
+
+    private synchronized void connect() {
+        try {
+            if(!isNull(zooKeeper)) {
+                zooKeeper.close();
+            }
+            ZooKeeper zk = new ZooKeeper(connectString, sessionTimeout, this);
+            if(!isNull(digest)) {
+                zk.addAuthInfo("digest", digest.getBytes(UTF_8));
+            }
+            zooKeeper = zk;
+        } catch(Exception e) {
+            LOGGER.error("Unable to connect to ZooKeeper {}, running standalone", connectString, e);
+        }
+    }
+
+    /**
+     * Sets up everything tied to current session: election node, ownership of running queries and watches.
+     * Runs again only once a new session is established.
+     */
+    private synchronized void initSession() {
+        ZooKeeper zk = zooKeeper;
+        if(isNull(zk) || zk.getSessionId() == initializedSession) {
+            return;
+        }
+        try {
+            createPath(queriesPath + "/" + QUERY);
+            createPath(queriesPath + "/" + S3_QUERY);
+            createPath(electionPath);
+            createPath(refreshPath);
+
+            String created = zk.create(electionPath + "/n_", nodeUrl.getBytes(UTF_8), acl, CreateMode.EPHEMERAL_SEQUENTIAL);
+            electionNode = created.substring(created.lastIndexOf('/') + 1);
+            for(String path : ownedQueries.keySet()) {
+                createOwnership(path);
+            }
+            initializedSession = zk.getSessionId();
+            LOGGER.info("Joined cluster as {} ({})", nodeUrl, electionNode);
+
+            checkLeadership();
+            watchRefresh();
+        } catch(KeeperException | InterruptedException e) {
+            LOGGER.error("Unable to initialize ZooKeeper session", e);
+        }
+    }
+
+    private void checkLeadership() {
+        try {
+            List<String> candidates = zooKeeper.getChildren(electionPath, true);
+            Collections.sort(candidates);
+            memberUrls = readMembers(candidates);
+            boolean wasLeader = leader;
+            leader = !candidates.isEmpty() && candidates.get(0).equals(electionNode);
+            if(leader != wasLeader) {
+                LOGGER.info("Node {} is {} leader", nodeUrl, leader ? "now" : "no longer");
+            }
+        } catch(KeeperException | InterruptedException e) {
+            LOGGER.warn("Unable to check leadership", e);
+        }
+    }
+
+    private Set<String> readMembers() {
+        try {
+            return readMembers(zooKeeper.getChildren(electionPath, false));
+        } catch(KeeperException | InterruptedException e) {
+            LOGGER.warn("Unable to read cluster members", e);
+            return memberUrls;
+        }
+    }
+
+    /**
+     * @return URLs of nodes taking part in election, that is every live node.
+     */
+    private Set<String> readMembers(List<String> candidates) throws InterruptedException {
+        Set<String> urls = new HashSet<>();
+        for(String candidate : candidates) {
+            try {
+                urls.add(new String(zooKeeper.getData(electionPath + "/" + candidate, false, null), UTF_8));
+            } catch(KeeperException.NoNodeException e) {
+                // left since listing
+            } catch(KeeperException e) {
+                LOGGER.warn("Unable to read cluster member {}", candidate, e);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Drops ownership of queries registered longer than {@code cluster.ownership.hours} ago,
+     * by then their results are no longer routed.
+     */
+    private void expireOwnership() {
+        long expiredBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(OWNERSHIP_HOURS.get());
+        ownedQueries.entrySet().stream()
+                .filter(entry -> entry.getValue() < expiredBefore)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList())
+                .forEach(this::removeOwnership);
+    }
+
+    private void watchRefresh() {
+        try {
+            zooKeeper.exists(refreshPath, true);
+        } catch(KeeperException | InterruptedException e) {
+            LOGGER.warn("Unable to watch {}", refreshPath, e);
+        }
+    }
+
+    private void runRefreshCallbacks() {
+        for(Runnable callback : refreshCallbacks) {
+            try {
+                callback.run();
+            } catch(RuntimeException e) {
+                LOGGER.error("Refresh callback failed", e);
+            }
+        }
+    }
+
+    private void createOwnership(String path) {
+        ZooKeeper zk = zooKeeper;
+        try {
+            zk.create(path, nodeUrl.getBytes(UTF_8), acl, CreateMode.EPHEMERAL);
+        } catch(KeeperException.NodeExistsException e) {
+            replaceStaleOwnership(zk, path);
+        } catch(KeeperException | InterruptedException e) {
+            LOGGER.warn("Unable to record ownership of {}", path, e);
+        }
+    }
+
+    /**
+     * Takes over ownership znode left by a previous session of this node, which lingers until
+     * ZooKeeper expires that session.
+     */
+    private void replaceStaleOwnership(ZooKeeper zk, String path) {
+        try {
+            Stat stat = new Stat();
+            String owner = new String(zk.getData(path, false, stat), UTF_8);
+            if(stat.getEphemeralOwner() == zk.getSessionId()) {
+                LOGGER.debug("Ownership of {} already recorded", path);
+                return;
+            }
+            if(!nodeUrl.equals(owner)) {
+                LOGGER.warn("Query {} is owned by {}, not taking it over", path, owner);
+                return;
+            }
+            zk.delete(path, stat.getVersion());
+            zk.create(path, nodeUrl.getBytes(UTF_8), acl, CreateMode.EPHEMERAL);
+        } catch(KeeperException | InterruptedException e) {
+            LOGGER.warn("Unable to record ownership of {}", path, e);
+        }
+    }
+
+    private void createPath(String path) throws KeeperException, InterruptedException {
+        StringBuilder current = new StringBuilder();
+        for(String segment : path.substring(1).split("/")) {
+            current.append('/').append(segment);
+            Stat stat = zooKeeper.exists(current.toString(), false);
+            if(isNull(stat)) {
+                try {
+                    zooKeeper.create(current.toString(), new byte[0], acl, CreateMode.PERSISTENT);
+                } catch(KeeperException.NodeExistsException e) {
+                    // created concurrently by another node
+                }
+            }
+        }
+    }
+
+    private static String defaultNodeUrl() {
+        try {
+            return "http://" + InetAddress.getLocalHost().getHostName() + ":8080";
+        } catch(UnknownHostException e) {
+            return "http://localhost:8080";
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.dbs.celerity.queryrunner.ratelimit;
+
+import com.netflix.config.DynamicIntProperty;
+
+/**
+ * Per-user limits of one endpoint, read from {@code ratelimit.<name>.*} properties:
+ * <ul>
+ *     <li>{@code per-minute}: sustained requests per minute, 0 disables rate limiting.</li>
+ *     <li>{@code burst}: requests allowed at once before rate applies.</li>
+ *     <li>{@code concurrent}: requests in progress at once, 0 disables the cap.</li>
+ * </ul>
+ */
+public class EndpointLimit {
+    private final String name;
+    private final DynamicIntProperty perMinute;
+    private final DynamicIntProperty burst;
+    private final DynamicIntProperty concurrent;
+
+    public EndpointLimit(String name, int perMinute, int burst, int concurrent) {
+        this.name = name;
+        this.perMinute = new DynamicIntProperty("ratelimit." + name + ".per-minute", perMinute);
+        this.burst = new DynamicIntProperty("ratelimit." + name + ".burst", burst);
+        this.concurrent = new DynamicIntProperty("ratelimit." + name + ".concurrent", concurrent);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPerMinute() {
+        return perMinute.get();
+    }
+
+    public int getBurst() {
+        return burst.get();
+    }
+
+    public int getConcurrent() {
+        return concurrent.get();
+    }
+}
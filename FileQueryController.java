@@ -1,85 +1,88 @@
 package com.dbs.celerity.queryrunner.api.filequery;
 
+import com.dbs.celerity.queryrunner.api.JsonStreamWriter;
+import com.dbs.celerity.queryrunner.model.SearchResult;
 import com.dbs.celerity.queryrunner.pojo.Tree;
 import com.netflix.config.DynamicStringProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.*;
 
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.thymeleaf.util.StringUtils;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import static org.springframework.http.ResponseEntity.ok;
+
 @RestController
 
 public class FileQueryController {
-    List <Tree>node=new LinkedList();
     private static final Logger LOGGER = LoggerFactory.getLogger(FileQueryController.class);
     private static final DynamicStringProperty DIRECTORY_PATH = new DynamicStringProperty("filequery.directorypath.url", null);
+    //private static final String ROOT_PATH = DIRECTORY_PATH.get();
+    static final String ROOT_PATH = "./";
 
-    @RequestMapping("file")
-    public List<Tree> file() throws UnsupportedEncodingException {
-        LOGGER.info("Started File Query Process");
-        node.removeAll(node);
-        //String path=DIRECTORY_PATH.get();
-        String path="./";
-        int level=0;
-        List<Tree>file=getFile(path,1,level);
-        LOGGER.info("Contents for file query" + file);
-        return file;
+    private final FileSearchService fileSearchService;
+
+    @Autowired
+    public FileQueryController(FileSearchService fileSearchService) {
+        this.fileSearchService = fileSearchService;
     }
 
-    private  List<Tree> getFile(String path,int id,int pid) throws UnsupportedEncodingException {
-        File file = new File(path);
-        if(file.exists()) {
-            File[] array = file.listFiles();
-
-            List fileList = Arrays.asList(array);
-
-            Collections.sort(fileList, new Comparator<File>() {
-                @Override
-                public int compare(File o1, File o2) {
-                    if (o1.isDirectory() && o2.isFile())
-                        return -1;
-                    if (o1.isFile() && o2.isDirectory())
-                        return 1;
-                    return o1.getName().compareTo(o2.getName());
-                }
-            });
-
-            for (int i = 0; i < array.length; i++) {
-                Tree tree = new Tree();
-                tree.setpId(pid);
-                tree.setId(id);
-                tree.setName(array[i].getName());
-
-                //check whether it is directory
-                if (array[i].isDirectory()) {
-                    node.add(tree);
-                    getFile(array[i].getPath(), id * 10 + 1 + i, id);
-                    id++;
-                } else {
-                    tree.setUrl("/file/download?filePath="+java.net.URLEncoder.encode(array[i].getAbsolutePath(),"utf-8").replace("\\","/"));
-                    node.add(tree);
-                    id++;
+    /**
+     * REST API called when retrieving the local file tree.
+     * Nodes are written to the response while the directory is scanned, which also updates the search index.
+     *
+     * @param format "json" for a JSON array of nodes, "ndjson" for one node per line.
+     * @return Streamed list of zTree nodes.
+     */
+    @RequestMapping("file")
+    public ResponseEntity<StreamingResponseBody> file(@RequestParam(defaultValue = "json") String format) {
+        LOGGER.info("Started File Query Process");
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+
+        StreamingResponseBody body = out -> {
+            try(TreeJsonWriter writer = new TreeJsonWriter(out, ndjson)) {
+                try {
+                    fileSearchService.scan(writer::write);
+                } catch(IOException | RuntimeException e) {
+                    writer.fail(e);
+                    throw e;
                 }
+                LOGGER.info("Finished file query, {} nodes written", writer.getCount());
             }
-        } else {
-            System.out.println("File not exist");
-        }
-        return node;
+        };
+        return ok().contentType(ndjson ? JsonStreamWriter.APPLICATION_NDJSON : MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * REST API called when searching the local file tree by name or path.
+     * Answered from index kept in sync in the background, flagged as indexing until it is complete.
+     *
+     * @param q     text to look for in paths, at least 2 characters.
+     * @param limit maximum number of hits, capped by search.max-hits.
+     * @return Best matches first, along with index size.
+     */
+    @RequestMapping("file/search")
+    public SearchResult search(@RequestParam String q, @RequestParam(defaultValue = "50") int limit) {
+        LOGGER.info("Processing file search request {} ...", q);
+        return fileSearchService.search(q, limit);
     }
 
     @RequestMapping("file/download")
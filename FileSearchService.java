@@ -0,0 +1,165 @@
+package com.dbs.celerity.queryrunner.api.filequery;
+
+import com.dbs.celerity.queryrunner.model.SearchHit;
+import com.dbs.celerity.queryrunner.model.SearchResult;
+import com.dbs.celerity.queryrunner.search.TrigramIndex;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.config.DynamicIntProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.isNull;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Searches the local file tree by name or path.
+ * <p>
+ * Index is kept in sync with the directory by the file tree scan itself: each {@link #scan(FileTreeScanner.Visitor)}
+ * of a file tree request updates it on the way, adding new entries and removing missing ones instead of rebuilding.
+ * A background task, started by first search, scans every {@code search.file.reindex.minutes} unless a request
+ * did meanwhile. One scan updates index at a time. Searches never scan: until a first scan completes they answer
+ * from entries indexed so far, flagged as indexing.
+ */
+@Service
+public class FileSearchService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSearchService.class);
+
+    private static final DynamicIntProperty SEARCH_MAX_HITS = new DynamicIntProperty("search.max-hits", 500);
+    private static final DynamicIntProperty REINDEX_MINUTES = new DynamicIntProperty("search.file.reindex.minutes", 10);
+
+    private final String rootPath;
+    private final TrigramIndex index = new TrigramIndex();
+    private final Lock syncLock = new ReentrantLock();
+    private final ScheduledExecutorService executorService;
+    private ScheduledFuture<?> scheduledFuture;
+    private volatile boolean indexed;
+    private volatile long syncedAt;
+
+    public FileSearchService() {
+        this(FileQueryController.ROOT_PATH);
+    }
+
+    /**
+     * @param rootPath directory to index.
+     */
+    FileSearchService(String rootPath) {
+        this.rootPath = rootPath;
+        this.executorService = newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("file-index-%d").setDaemon(true).build());
+        addCallbacks();
+    }
+
+    /**
+     * Searches indexed files and directories.
+     *
+     * @param query text to look for in paths, at least 2 characters.
+     * @param limit maximum number of hits, capped by search.max-hits.
+     * @return Best matches first, along with index size.
+     */
+    public SearchResult search(String query, int limit) {
+        scheduleSync();
+        boolean indexing = !indexed;
+
+        long start = System.nanoTime();
+        TrigramIndex.Result result = index.search(query, Math.min(limit, SEARCH_MAX_HITS.get()));
+        List<SearchHit> hits = new ArrayList<>(result.getMatches().size());
+        for(TrigramIndex.Match match : result.getMatches()) {
+            String url = match.isFile() ? FileTreeScanner.downloadUrl(new File(rootPath, match.getPath())) : null;
+            hits.add(new SearchHit(match.getPath(), match.getName(), match.isFile(), url, match.getScore()));
+        }
+        long tookMs = (System.nanoTime() - start) / 1_000_000;
+        return new SearchResult(query, hits, result.getTotal(), result.isApproximate(), tookMs, index.size(),
+                index.estimateBytes(), indexing);
+    }
+
+    /**
+     * Scans directory for a file tree request, updating index on the way unless another scan is already doing so.
+     *
+     * @param visitor receives nodes as {@link FileTreeScanner#scan(String, FileTreeScanner.Visitor)} hands them.
+     */
+    public void scan(FileTreeScanner.Visitor visitor) throws IOException {
+        if(!syncLock.tryLock()) {
+            FileTreeScanner.scan(rootPath, visitor);
+            return;
+        }
+        try {
+            FileTreeScanner.scan(rootPath, visitor, index);
+            synced();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    private synchronized void scheduleSync() {
+        if(isNull(scheduledFuture)) {
+            scheduledFuture = executorService.scheduleWithFixedDelay(() -> sync(false), 0, REINDEX_MINUTES.get(), MINUTES);
+        }
+    }
+
+    /**
+     * Syncs index on the index thread, after any sync in progress, even if a request just did.
+     */
+    Future<?> refresh() {
+        return executorService.submit(() -> sync(true));
+    }
+
+    /**
+     * Brings index in line with directory, unless a file tree request did within last period, and drops entries
+     * removed since last run. Only ever runs on the index thread.
+     */
+    private void sync(boolean force) {
+        long start = System.currentTimeMillis();
+        syncLock.lock();
+        try {
+            boolean scan = force || !indexed || System.nanoTime() - syncedAt >= MINUTES.toNanos(REINDEX_MINUTES.get());
+            if(scan) {
+                FileTreeScanner.scan(rootPath, null, index);
+                synced();
+            }
+            index.compact();
+            if(scan) {
+                LOGGER.info("Synced file search index in {} ms, {} entries, about {} KB",
+                        System.currentTimeMillis() - start, index.size(), index.estimateBytes() / 1024);
+            }
+        } catch(Throwable e) {
+            // anything thrown would cancel the schedule
+            LOGGER.error("Unable to index {} for search", rootPath, e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void synced() {
+        syncedAt = System.nanoTime();
+        indexed = true;
+    }
+
+    private void addCallbacks() {
+        REINDEX_MINUTES.addCallback(() -> {
+            LOGGER.info("{} changed to {}! rescheduling file index task", REINDEX_MINUTES.getName(), REINDEX_MINUTES.get());
+            synchronized(this) {
+                if(!isNull(scheduledFuture)) {
+                    scheduledFuture.cancel(false);
+                    scheduledFuture = executorService.scheduleWithFixedDelay(() -> sync(false), REINDEX_MINUTES.get(), REINDEX_MINUTES.get(), MINUTES);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,173 @@
+package com.dbs.celerity.queryrunner.api.filequery;
+
+import com.dbs.celerity.queryrunner.pojo.Tree;
+import com.dbs.celerity.queryrunner.search.TrigramIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Walks a local directory and flattens it into zTree nodes, optionally keeping a search index in line with it.
+ * Directories reached again through a symbolic link below them are not walked twice.
+ */
+public final class FileTreeScanner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileTreeScanner.class);
+
+    private FileTreeScanner() {
+    }
+
+    /**
+     * Scans directory recursively, directories first, then by name.
+     *
+     * @param path root directory to scan.
+     * @return List of nodes, each child referencing its parent through pId.
+     */
+    public static List<Tree> scan(String path) {
+        List<Tree> nodes = new ArrayList<>();
+        try {
+            scan(path, nodes::add);
+        } catch(IOException e) {
+            // collecting into a list never fails
+            throw new UncheckedIOException(e);
+        }
+        return nodes;
+    }
+
+    /**
+     * Scans directory recursively, handing each node to visitor as soon as it is read,
+     * so callers can write nodes out without holding the whole tree.
+     *
+     * @param path    root directory to scan.
+     * @param visitor receives nodes in the same order as {@link #scan(String)} returns them.
+     */
+    public static void scan(String path, Visitor visitor) throws IOException {
+        scan(path, visitor, null);
+    }
+
+    /**
+     * Scans directory like {@link #scan(String, Visitor)}, bringing index in line with it on the way: entries new
+     * to index are added, and entries of each listed directory that are gone removed. Entries of directories that
+     * cannot be listed are kept.
+     *
+     * @param path    root directory to scan.
+     * @param visitor receives nodes, or null to only update index.
+     * @param index   index to update, or null. Callers must not update it concurrently.
+     */
+    public static void scan(String path, Visitor visitor, TrigramIndex index) throws IOException {
+        getFile(path, 1, 0, visitor, index, TrigramIndex.ROOT, new HashSet<>());
+    }
+
+    /**
+     * @return URL downloading file through {@code file/download}.
+     */
+    public static String downloadUrl(File file) {
+        return "/file/download?filePath="+URLEncoder.encode(file.getAbsolutePath(), StandardCharsets.UTF_8).replace("\\","/");
+    }
+
+    /**
+     * @param ancestors real paths of directories being walked, to detect link cycles.
+     */
+    private static void getFile(String path, int id, int pid, Visitor visitor, TrigramIndex index, int indexNode,
+                                Set<Path> ancestors) throws IOException {
+        File file = new File(path);
+        if(file.exists()) {
+            Path realPath;
+            try {
+                realPath = file.toPath().toRealPath();
+            } catch(IOException e) {
+                LOGGER.warn("Unable to resolve: {}", path, e);
+                return;
+            }
+            if(!ancestors.add(realPath)) {
+                LOGGER.warn("Skipping link back to a parent directory: {}", path);
+                return;
+            }
+            try {
+                getChildren(file, id, pid, visitor, index, indexNode, ancestors);
+            } finally {
+                ancestors.remove(realPath);
+            }
+        } else {
+            LOGGER.warn("File not exist: {}", path);
+        }
+    }
+
+    private static void getChildren(File file, int id, int pid, Visitor visitor, TrigramIndex index, int indexNode,
+                                    Set<Path> ancestors) throws IOException {
+        File[] array = file.listFiles();
+        if(array == null) {
+            // not a directory, or not readable
+            LOGGER.warn("Unable to list: {}", file.getPath());
+            return;
+        }
+
+        Arrays.sort(array, new Comparator<File>() {
+            @Override
+            public int compare(File o1, File o2) {
+                if (o1.isDirectory() && o2.isFile())
+                    return -1;
+                if (o1.isFile() && o2.isDirectory())
+                    return 1;
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < array.length; i++) {
+            boolean isDirectory = array[i].isDirectory();
+            int child = TrigramIndex.ROOT;
+            if (!isNull(index)) {
+                names.add(array[i].getName());
+                child = index.sync(indexNode, array[i].getName(), !isDirectory);
+            }
+
+            Tree tree = null;
+            if (!isNull(visitor)) {
+                tree = new Tree();
+                tree.setpId(pid);
+                tree.setId(id);
+                tree.setName(array[i].getName());
+            }
+
+            //check whether it is directory
+            if (isDirectory) {
+                if (!isNull(tree)) {
+                    visitor.visit(tree);
+                }
+                getFile(array[i].getPath(), id * 10 + 1 + i, id, visitor, index, child, ancestors);
+                id++;
+            } else {
+                if (!isNull(tree)) {
+                    tree.setUrl(downloadUrl(array[i]));
+                    visitor.visit(tree);
+                }
+                id++;
+            }
+        }
+        if (!isNull(index)) {
+            for (int child : index.children(indexNode)) {
+                if (!names.contains(index.name(child))) {
+                    index.remove(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Callback receiving scanned nodes.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(Tree node) throws IOException;
+    }
+}
@@ -0,0 +1,98 @@
+package com.dbs.celerity.queryrunner.api;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.springframework.http.MediaType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes values one at a time, either as a JSON array or as newline delimited JSON.
+ *
+ * @param <T> type of values written.
+ */
+public abstract class JsonStreamWriter<T> implements Closeable {
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            // a failed document must stay unterminated, not be closed into a valid one
+            .disable(StreamWriteFeature.AUTO_CLOSE_CONTENT)
+            .build();
+
+    private static final SerializedString ERROR = new SerializedString("error");
+
+    protected final JsonGenerator generator;
+    private final boolean ndjson;
+    private boolean failed;
+    private int count;
+
+    /**
+     * @param out    stream to write to, left open on close.
+     * @param ndjson true to write one value per line, false to write a single JSON array.
+     */
+    protected JsonStreamWriter(OutputStream out, boolean ndjson) throws IOException {
+        this.generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+        this.ndjson = ndjson;
+        if(ndjson) {
+            generator.setRootValueSeparator(null);
+        } else {
+            generator.writeStartArray();
+        }
+    }
+
+    public void write(T value) throws IOException {
+        writeValue(value);
+        if(ndjson) {
+            generator.writeRaw('\n');
+        }
+        count++;
+    }
+
+    /**
+     * Writes a single value, as array element or as line.
+     */
+    protected abstract void writeValue(T value) throws IOException;
+
+    /**
+     * @return Number of values written so far.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Marks document as failed, so clients can tell it from a complete one. JSON array is left
+     * unterminated, NDJSON gets a last line holding the error.
+     *
+     * @param cause error that stopped writing.
+     */
+    public void fail(Exception cause) {
+        failed = true;
+        if(ndjson && generator.getOutputContext().inRoot()) {
+            try {
+                generator.writeStartObject();
+                generator.writeFieldName(ERROR);
+                generator.writeString(String.valueOf(cause.getMessage()));
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            } catch(IOException e) {
+                cause.addSuppressed(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(!ndjson && !failed) {
+            generator.writeEndArray();
+        }
+        generator.close();
+    }
+}
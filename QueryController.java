@@ -1,9 +1,15 @@
 package com.dbs.celerity.queryrunner.api.query;
 
 import com.dbs.celerity.queryrunner.model.MetaData;
+import com.dbs.celerity.queryrunner.model.TableFields;
+import com.dbs.celerity.queryrunner.service.cluster.ClusterCoordinator;
 import com.dbs.celerity.queryrunner.service.metadata.MetaDataService;
+import com.dbs.celerity.queryrunner.service.metadata.TableFieldsService;
 import com.dbs.celerity.queryrunner.service.query.QueryRunnerService;
+import com.dbs.celerity.queryrunner.service.query.ResultRowIndex;
+import com.dbs.celerity.queryrunner.service.resultstore.ResultStoreService;
 import com.dbs.celerity.queryrunner.userdata.dto.QueryDto;
+import com.dbs.celerity.queryrunner.webauth.UserRequestContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,11 +19,13 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static org.springframework.http.ResponseEntity.notFound;
 import static org.springframework.http.ResponseEntity.ok;
 
 /**
@@ -31,11 +39,19 @@ public class QueryController {
 
     private final MetaDataService metaDataService;
     private final QueryRunnerService queryRunnerService;
+    private final TableFieldsService tableFieldsService;
+    private final ResultStoreService resultStoreService;
+    private final ClusterCoordinator clusterCoordinator;
 
     @Autowired
-    public QueryController(MetaDataService metaDataService, QueryRunnerService queryRunnerService) {
+    public QueryController(MetaDataService metaDataService, QueryRunnerService queryRunnerService,
+                           TableFieldsService tableFieldsService, ResultStoreService resultStoreService,
+                           ClusterCoordinator clusterCoordinator) {
         this.metaDataService = metaDataService;
         this.queryRunnerService = queryRunnerService;
+        this.tableFieldsService = tableFieldsService;
+        this.resultStoreService = resultStoreService;
+        this.clusterCoordinator = clusterCoordinator;
     }
 
     /**
@@ -71,7 +87,19 @@ public class QueryController {
     @GetMapping(path = "/metadata/{ds}/{db}/{table}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public Set<String> getTableFields(@PathVariable String ds, @PathVariable String db, @PathVariable String table) {
         LOGGER.info("Processing query table fields request {}.{} in {} ...", db, table, ds);
-        return metaDataService.getTableFields(ds, db, table);
+        return tableFieldsService.getTableFields(ds, db, table);
+    }
+
+    /**
+     * REST API called when retrieving list of fields for several tables at once.
+     *
+     * @param tables tables to retrieve fields for, each with ds, db and table set.
+     * @return List of requested tables with their fields, in request order.
+     */
+    @PostMapping(path = "/metadata/fields", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public List<TableFields> getTablesFields(@RequestBody List<TableFields> tables) {
+        LOGGER.info("Processing query batch table fields request for {} tables ...", tables.size());
+        return tableFieldsService.getTableFields(tables);
     }
 
     /**
@@ -94,7 +122,9 @@ public class QueryController {
     @PostMapping("/execute")
     public QueryDto executeQuery(@RequestBody QueryDto request) {
         LOGGER.info("Processing query execute request {} ...", request.toString());
-        return queryRunnerService.executeQuery(request);
+        QueryDto query = queryRunnerService.executeQuery(request);
+        clusterCoordinator.registerQuery(ClusterCoordinator.QUERY, String.valueOf(query.getId()));
+        return query;
     }
 
     /**
@@ -147,20 +177,40 @@ public class QueryController {
     @DeleteMapping(path = "/delete/{id}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<Map<String, Object>> deleteQuery(@PathVariable long id) {
         LOGGER.info("Processing query delete from history request {} ...", id);
-        return ok(Collections.singletonMap("success", queryRunnerService.deleteQuery(id)));
+        Object success = queryRunnerService.deleteQuery(id);
+        if(Boolean.TRUE.equals(success)) {
+            resultStoreService.remove(ResultStoreService.QUERY, id);
+            clusterCoordinator.unregisterQuery(ClusterCoordinator.QUERY, String.valueOf(id));
+        }
+        return ok(Collections.singletonMap("success", success));
     }
 
     /**
      * REST API called when attempting to retrieve results of successfully executed query.
+     * When offset or limit is given, only that window of rows is read from the result file.
      *
-     * @param id Primary key ID of query to retrieve results for.
-     * @return Code 200(OK), with stream resource of result file if available,
+     * @param id     Primary key ID of query to retrieve results for.
+     * @param offset first row of window, 0 being first line of result file.
+     * @param limit  number of rows in window, capped by query.result.window.max-rows.
+     * @return Code 200(OK), with stream resource of result file, or window of rows, if available,
      * otherwise Code 404(NOT FOUND).
      */
     @GetMapping(path = "/result/{id}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<InputStreamResource> getQueryResult(@PathVariable long id) {
-        LOGGER.info("Processing query get result request {} ...", id);
-        return queryRunnerService.getQueryResult(id);
+    public ResponseEntity<?> getQueryResult(@PathVariable long id, @RequestParam(required = false) Long offset,
+                                            @RequestParam(required = false) Integer limit) throws IOException {
+        if(offset == null && limit == null) {
+            LOGGER.info("Processing query get result request {} ...", id);
+            restoreResultFile(id);
+            return queryRunnerService.getQueryResult(id);
+        }
+
+        LOGGER.info("Processing query get result window request {} offset {} limit {} ...", id, offset, limit);
+        ResponseEntity<FileSystemResource> result = restoreResultFile(id);
+        if(!result.getStatusCode().is2xxSuccessful() || result.getBody() == null || !result.getBody().exists()) {
+            return notFound().build();
+        }
+        return ok(ResultRowIndex.readWindow(result.getBody().getFile().toPath(), offset == null ? 0 : offset,
+                limit == null ? Integer.MAX_VALUE : limit));
     }
 
     /**
@@ -171,8 +221,25 @@ public class QueryController {
      * otherwise Code 404(NOT FOUND).
      */
     @GetMapping(path = "/download/{id}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<FileSystemResource> downloadQueryResult(@PathVariable long id) {
+    public ResponseEntity<FileSystemResource> downloadQueryResult(@PathVariable long id) throws IOException {
         LOGGER.info("Processing query download request {} ...", id);
-        return queryRunnerService.downloadQueryResult(id);
+        return restoreResultFile(id);
+    }
+
+    /**
+     * Brings result file of query back to local disk if result store compressed or tiered it,
+     * then looks it up. Restore goes first since lookup cannot find a file that was moved away.
+     *
+     * @param id Primary key ID of query.
+     * @return Response of result file lookup.
+     */
+    private ResponseEntity<FileSystemResource> restoreResultFile(long id) throws IOException {
+        String userId = UserRequestContext.getUserId();
+        resultStoreService.ensureLocal(userId, ResultStoreService.QUERY, id);
+        ResponseEntity<FileSystemResource> result = queryRunnerService.downloadQueryResult(id);
+        if(result.getStatusCode().is2xxSuccessful() && result.getBody() != null && result.getBody().exists()) {
+            resultStoreService.register(userId, ResultStoreService.QUERY, id, result.getBody().getFile().toPath());
+        }
+        return result;
     }
 }
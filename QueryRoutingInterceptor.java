@@ -0,0 +1,109 @@
+package com.dbs.celerity.queryrunner.service.cluster;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Forwards requests about a query to the node running it, streaming back its response.
+ * Handles request locally if query is not owned by another node or the owner cannot be reached.
+ */
+public class QueryRoutingInterceptor implements HandlerInterceptor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryRoutingInterceptor.class);
+
+    static final String FORWARDED_HEADER = "X-Celerity-Forwarded";
+
+    private static final List<String> REQUEST_HEADERS = Arrays.asList(
+            HttpHeaders.AUTHORIZATION, HttpHeaders.COOKIE, HttpHeaders.ACCEPT, HttpHeaders.USER_AGENT);
+    private static final List<String> RESPONSE_HEADERS = Arrays.asList(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH, HttpHeaders.CONTENT_DISPOSITION);
+
+    private final ClusterCoordinator clusterCoordinator;
+    private final String kind;
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * @param kind type of query handled by intercepted paths, {@link ClusterCoordinator#QUERY}
+     *             or {@link ClusterCoordinator#S3_QUERY}.
+     */
+    public QueryRoutingInterceptor(ClusterCoordinator clusterCoordinator, String kind, CloseableHttpClient httpClient) {
+        this.clusterCoordinator = clusterCoordinator;
+        this.kind = kind;
+        this.httpClient = httpClient;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if(request.getDispatcherType() != DispatcherType.REQUEST || !isNull(request.getHeader(FORWARDED_HEADER))) {
+            return true;
+        }
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if(isNull(variables) || isNull(variables.get("id"))) {
+            return true;
+        }
+
+        Optional<String> owner = clusterCoordinator.findRemoteOwner(kind, variables.get("id"));
+        return !owner.isPresent() || !forward(owner.get(), request, response);
+    }
+
+    /**
+     * @return true if owner answered and its response was copied.
+     */
+    private boolean forward(String owner, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String url = owner + request.getRequestURI() + (isNull(request.getQueryString()) ? "" : "?" + request.getQueryString());
+        HttpGet forwarded = new HttpGet(url);
+        for(String name : REQUEST_HEADERS) {
+            String value = request.getHeader(name);
+            if(!isNull(value)) {
+                forwarded.setHeader(name, value);
+            }
+        }
+        forwarded.setHeader(FORWARDED_HEADER, clusterCoordinator.getNodeUrl());
+
+        CloseableHttpResponse ownerResponse;
+        try {
+            ownerResponse = httpClient.execute(forwarded);
+        } catch(IOException e) {
+            LOGGER.warn("Owner {} unreachable, handling {} locally", owner, request.getRequestURI(), e);
+            return false;
+        }
+
+        LOGGER.info("Forwarded {} to owner {}", request.getRequestURI(), owner);
+        try(CloseableHttpResponse closeable = ownerResponse) {
+            response.setStatus(ownerResponse.getStatusLine().getStatusCode());
+            for(String name : RESPONSE_HEADERS) {
+                Header header = ownerResponse.getFirstHeader(name);
+                if(!isNull(header)) {
+                    response.setHeader(name, header.getValue());
+                }
+            }
+            HttpEntity entity = ownerResponse.getEntity();
+            if(!isNull(entity)) {
+                try(InputStream in = entity.getContent()) {
+                    in.transferTo(response.getOutputStream());
+                }
+            }
+        }
+        return true;
+    }
+}
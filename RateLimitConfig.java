@@ -0,0 +1,25 @@
+package com.dbs.celerity.queryrunner.ratelimit;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Registers per-user limits of query execution and download endpoints.
+ * Defaults can be tuned live through {@code ratelimit.*} properties, see {@link EndpointLimit}.
+ */
+@Configuration
+public class RateLimitConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new RateLimitInterceptor(new EndpointLimit("query-execute", 30, 10, 5)))
+                .addPathPatterns("/query/execute");
+        registry.addInterceptor(new RateLimitInterceptor(new EndpointLimit("s3-execute", 30, 10, 5)))
+                .addPathPatterns("/s3query/execute");
+        registry.addInterceptor(new RateLimitInterceptor(new EndpointLimit("s3-download", 10, 5, 3)))
+                .addPathPatterns("/s3query/downloadFromS3");
+        registry.addInterceptor(new RateLimitInterceptor(new EndpointLimit("file-download", 0, 0, 4)))
+                .addPathPatterns("/file/download", "/query/download/**", "/s3query/download/**");
+    }
+}
@@ -0,0 +1,150 @@
+package com.dbs.celerity.queryrunner.ratelimit;
+
+import com.dbs.celerity.queryrunner.webauth.UserRequestContext;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.isNull;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Applies an {@link EndpointLimit} per user. Requests over the limit are answered
+ * right away with 429 (TOO MANY REQUESTS) and a Retry-After header instead of waiting for a worker.
+ */
+public class RateLimitInterceptor implements AsyncHandlerInterceptor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitInterceptor.class);
+
+    private static final String PERMIT_ATTRIBUTE = RateLimitInterceptor.class.getName() + ".permit";
+    // requests without user share one bucket, no user id is empty
+    private static final String ANONYMOUS = "";
+
+    private final EndpointLimit limit;
+    // buckets idle for an hour are dropped and come back full
+    private final ConcurrentMap<String, TokenBucket> buckets = CacheBuilder.newBuilder()
+            .expireAfterAccess(1, HOURS)
+            .<String, TokenBucket>build()
+            .asMap();
+    // counters are held by permits of requests in progress, so only idle ones are collected
+    private final ConcurrentMap<String, AtomicInteger> inProgress = CacheBuilder.newBuilder()
+            .weakValues()
+            .<String, AtomicInteger>build()
+            .asMap();
+
+    public RateLimitInterceptor(EndpointLimit limit) {
+        this.limit = limit;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if(request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+        String userId = UserRequestContext.getUserId();
+        if(isNull(userId)) {
+            userId = ANONYMOUS;
+        }
+
+        long waitNanos = buckets.computeIfAbsent(userId, k -> new TokenBucket())
+                .tryAcquire(limit.getPerMinute(), limit.getBurst());
+        if(waitNanos > 0) {
+            LOGGER.warn("User {} exceeded request rate of {}", userId, limit.getName());
+            reject(response, Math.max(1, SECONDS.convert(waitNanos + SECONDS.toNanos(1) - 1, NANOSECONDS)));
+            return false;
+        }
+
+        int maxConcurrent = limit.getConcurrent();
+        if(maxConcurrent > 0) {
+            AtomicInteger counter = inProgress.computeIfAbsent(userId, k -> new AtomicInteger());
+            if(counter.incrementAndGet() > maxConcurrent) {
+                counter.decrementAndGet();
+                LOGGER.warn("User {} exceeded {} concurrent requests of {}", userId, maxConcurrent, limit.getName());
+                reject(response, 1);
+                return false;
+            }
+            request.setAttribute(PERMIT_ATTRIBUTE, new Permit(counter));
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Permit permit = (Permit) request.getAttribute(PERMIT_ATTRIBUTE);
+        if(permit != null) {
+            // streaming responses keep their permit until async processing is over
+            request.getAsyncContext().addListener(permit);
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if(request.getDispatcherType() != DispatcherType.REQUEST) {
+            return;
+        }
+        Permit permit = (Permit) request.getAttribute(PERMIT_ATTRIBUTE);
+        if(permit != null) {
+            permit.release();
+        }
+    }
+
+    private void reject(HttpServletResponse response, long retryAfterSeconds) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"message\":\"Too many " + limit.getName() + " requests, retry in "
+                + retryAfterSeconds + " seconds\"}");
+    }
+
+    /**
+     * Concurrent request slot, released once.
+     */
+    private static class Permit implements AsyncListener {
+        private final AtomicInteger counter;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(AtomicInteger counter) {
+            this.counter = counter;
+        }
+
+        void release() {
+            if(released.compareAndSet(false, true)) {
+                counter.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.dbs.celerity.queryrunner.service.query;
+
+import com.dbs.celerity.queryrunner.model.ResultWindow;
+import com.netflix.config.DynamicIntProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static org.springframework.http.HttpStatus.CONFLICT;
+
+/**
+ * Random access to rows of result files through a sidecar index of row offsets.
+ * <p>
+ * Index file ({@code <result>.idx}) holds the start offset of every row as a big-endian long,
+ * followed by the length of the result file, so row {@code n} spans {@code [idx[n], idx[n + 1])}.
+ * An index is only used while that length still matches the result file.
+ */
+public final class ResultRowIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultRowIndex.class);
+
+    private static final DynamicIntProperty WINDOW_MAX_ROWS = new DynamicIntProperty("query.result.window.max-rows", 10000);
+
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private ResultRowIndex() {
+    }
+
+    public static Path indexPath(Path resultFile) {
+        return resultFile.resolveSibling(resultFile.getFileName() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Reads a window of rows, mapping only the index entries and bytes covering it.
+     * Builds the index first if result was not spilled through {@link RowIndexingOutputStream}.
+     *
+     * @param resultFile result file to read.
+     * @param offset     first row to read, 0 being first line of file.
+     * @param limit      maximum number of rows to read, capped by query.result.window.max-rows.
+     * @return Rows of window, along with total row count of result.
+     */
+    public static ResultWindow readWindow(Path resultFile, long offset, int limit) throws IOException {
+        Path indexFile = ensureIndex(resultFile);
+
+        try(FileChannel indexChannel = FileChannel.open(indexFile, READ)) {
+            long totalRows = indexChannel.size() / Long.BYTES - 1;
+            long first = Math.min(Math.max(offset, 0), totalRows);
+            long last = Math.min(first + Math.max(Math.min(limit, WINDOW_MAX_ROWS.get()), 0), totalRows);
+
+            List<String> rows = new ArrayList<>((int) (last - first));
+            if(last > first) {
+                LongBuffer offsets = indexChannel.map(READ_ONLY, first * Long.BYTES, (last - first + 1) * Long.BYTES).asLongBuffer();
+                long start = offsets.get(0);
+                long end = offsets.get((int) (last - first));
+
+                try(FileChannel resultChannel = FileChannel.open(resultFile, READ)) {
+                    ByteBuffer bytes = resultChannel.map(READ_ONLY, start, end - start);
+                    for(int i = 0; i < last - first; i++) {
+                        bytes.limit((int) (offsets.get(i + 1) - start));
+                        bytes.position((int) (offsets.get(i) - start));
+                        rows.add(stripLineEnd(UTF_8.decode(bytes)));
+                    }
+                }
+            }
+            return new ResultWindow(first, rows, totalRows);
+        }
+    }
+
+    /**
+     * Makes sure index of result file exists and covers the whole result. Results spilled through
+     * {@link RowIndexingOutputStream#spill(Path)} always have one, others are scanned once here.
+     *
+     * @return Path of index file.
+     * @throws ResponseStatusException CONFLICT if result changed while it was indexed, i.e. is still being written.
+     */
+    public static Path ensureIndex(Path resultFile) throws IOException {
+        Path indexFile = indexPath(resultFile);
+        if(isCurrent(indexFile, resultFile)) {
+            return indexFile;
+        }
+
+        LOGGER.info("Building row index of {} ...", resultFile);
+        long size = Files.size(resultFile);
+        FileTime modified = Files.getLastModifiedTime(resultFile);
+        try(InputStream in = new BufferedInputStream(Files.newInputStream(resultFile));
+            OutputStream out = new RowIndexingOutputStream(OutputStream.nullOutputStream(), resultFile)) {
+            in.transferTo(out);
+        }
+        if(Files.size(resultFile) != size || !Files.getLastModifiedTime(resultFile).equals(modified)) {
+            Files.deleteIfExists(indexFile);
+            throw new ResponseStatusException(CONFLICT, "Result is still being written, retry later");
+        }
+        return indexFile;
+    }
+
+    /**
+     * @return true if index is complete, no older than result and ends with current length of result.
+     */
+    private static boolean isCurrent(Path indexFile, Path resultFile) throws IOException {
+        try(FileChannel indexChannel = FileChannel.open(indexFile, READ)) {
+            long size = indexChannel.size();
+            if(size < Long.BYTES || size % Long.BYTES != 0
+                    || Files.getLastModifiedTime(indexFile).compareTo(Files.getLastModifiedTime(resultFile)) < 0) {
+                return false;
+            }
+            ByteBuffer length = ByteBuffer.allocate(Long.BYTES);
+            while(length.hasRemaining()) {
+                if(indexChannel.read(length, size - length.remaining()) < 0) {
+                    return false;
+                }
+            }
+            return length.getLong(0) == Files.size(resultFile);
+        } catch(NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static String stripLineEnd(CharBuffer row) {
+        int length = row.length();
+        if(length > 0 && row.charAt(length - 1) == '\n') {
+            length--;
+        }
+        if(length > 0 && row.charAt(length - 1) == '\r') {
+            length--;
+        }
+        return row.subSequence(0, length).toString();
+    }
+}
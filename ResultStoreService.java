@@ -0,0 +1,638 @@
+package com.dbs.celerity.queryrunner.service.resultstore;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.dbs.celerity.queryrunner.service.query.ResultRowIndex;
+import com.dbs.celerity.queryrunner.service.query.RowIndexingOutputStream;
+import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicStringProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.isNull;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Keeps local disk used by query result files bounded.
+ * <p>
+ * Results stay as plain files while in use. A background task gzips results not read for
+ * {@code resultstore.compress.after.minutes}, and once a user's local results exceed
+ * {@code resultstore.user.quota.mb} moves that user's least recently used results to the
+ * {@code resultstore.tier.bucket} S3 bucket. {@link #ensureLocal(String, String, long)} brings a result
+ * back to its original path before it is served.
+ * <p>
+ * Results spilled through {@link #spill(String, String, long, Path)} are tracked as soon as they are
+ * complete, so results nobody read yet still count against quota and get compressed.
+ * <p>
+ * Results are tracked by query, so a result can be found again once its file is gone. Where each
+ * result and its copies are is saved under {@code resultstore.state.dir}, one file per result, and
+ * survives restarts.
+ * <p>
+ * Never lazy, so its ready listener does not create it on the startup thread.
+ */
+@Service
+@Lazy(false)
+public class ResultStoreService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultStoreService.class);
+
+    public static final String QUERY = "query";
+    public static final String S3_QUERY = "s3query";
+
+    private static final DynamicStringProperty ENDPOINT = new DynamicStringProperty("s3.endpoint", null);
+    private static final DynamicStringProperty REGION = new DynamicStringProperty("s3.region", null);
+    private static final DynamicIntProperty MAX_RETRIES = new DynamicIntProperty("s3.max-retries", 5);
+    private static final DynamicStringProperty TIER_BUCKET = new DynamicStringProperty("resultstore.tier.bucket", null);
+    private static final DynamicStringProperty TIER_ACCESS_ID = new DynamicStringProperty("resultstore.tier.access-id", null);
+    private static final DynamicStringProperty TIER_ACCESS_KEY = new DynamicStringProperty("resultstore.tier.access-key", null);
+    private static final DynamicIntProperty USER_QUOTA_MB = new DynamicIntProperty("resultstore.user.quota.mb", 1024);
+    private static final DynamicIntProperty COMPRESS_AFTER_MINUTES = new DynamicIntProperty("resultstore.compress.after.minutes", 60);
+    private static final DynamicIntProperty COMPACTION_MINUTES = new DynamicIntProperty("resultstore.compaction.minutes", 10);
+    private static final DynamicIntProperty RANGE_READ_MB = new DynamicIntProperty("resultstore.tier.range-read.mb", 8);
+    private static final DynamicStringProperty STATE_DIR = new DynamicStringProperty("resultstore.state.dir", "./resultstore");
+
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String STATE_SUFFIX = ".properties";
+    private static final long MB = 1024L * 1024L;
+
+    private final ConcurrentMap<String, ResultEntry> entries = new ConcurrentHashMap<>();
+    private final Path stateDir;
+    private final ScheduledExecutorService executorService;
+    private ScheduledFuture<?> scheduledFuture;
+    private volatile AmazonS3 tierClient;
+    private volatile boolean loaded;
+
+    public ResultStoreService() {
+        this(Paths.get(STATE_DIR.get()), null);
+    }
+
+    /**
+     * @param stateDir   directory holding saved result state.
+     * @param tierClient client of tier bucket, or null to create one from s3.* and resultstore.tier.* settings.
+     */
+    ResultStoreService(Path stateDir, AmazonS3 tierClient) {
+        this.stateDir = stateDir;
+        this.tierClient = tierClient;
+        this.executorService = newSingleThreadScheduledExecutor();
+        addCallbacks();
+    }
+
+    /**
+     * Starts compaction schedule once application takes traffic.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void scheduleCompaction() {
+        if(isNull(scheduledFuture)) {
+            scheduledFuture = executorService.scheduleAtFixedRate(this::compact, COMPACTION_MINUTES.get(), COMPACTION_MINUTES.get(), MINUTES);
+        }
+    }
+
+    /**
+     * Opens result file of a query for spilling, row indexed, and starts tracking it once it is complete.
+     *
+     * @param userId     owner of result.
+     * @param kind       {@link #QUERY} or {@link #S3_QUERY}.
+     * @param id         ID of query.
+     * @param resultFile path result file should end up at.
+     * @return Stream to write result to, result only shows up at its path once closed.
+     */
+    public OutputStream spill(String userId, String kind, long id, Path resultFile) throws IOException {
+        return new FilterOutputStream(RowIndexingOutputStream.spill(resultFile)) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                register(userId, kind, id, resultFile);
+            }
+        };
+    }
+
+    /**
+     * Starts tracking result file of a query, or marks it as recently used if already tracked.
+     * A result found at another path than tracked replaces copies of the old one.
+     *
+     * @param userId     owner of result.
+     * @param kind       {@link #QUERY} or {@link #S3_QUERY}.
+     * @param id         ID of query.
+     * @param resultFile path of result file.
+     */
+    public void register(String userId, String kind, long id, Path resultFile) {
+        String resultId = resultId(kind, id);
+        Path path = resultFile.toAbsolutePath();
+        ResultEntry created = new ResultEntry(resultId, userId, path);
+        created.touch();
+        ResultEntry entry = entries().putIfAbsent(resultId, created);
+        if(isNull(entry)) {
+            synchronized(created) {
+                save(created);
+            }
+            return;
+        }
+
+        synchronized(entry) {
+            if(entry.removed) {
+                return;
+            }
+            if(!entry.path.equals(path)) {
+                LOGGER.info("Result {} moved from {} to {}", resultId, entry.path, path);
+                deleteLocalCopies(entry);
+                deleteTierCopy(entry);
+                entry.path = path;
+                entry.state = State.LOCAL;
+            }
+            entry.touch();
+            save(entry);
+        }
+    }
+
+    /**
+     * Makes sure result file of query is available uncompressed at its original path, restoring it
+     * from compressed or tiered copy if needed, and marks it as recently used. Does nothing for
+     * results not tracked or owned by another user.
+     *
+     * @param userId user requesting result.
+     * @param kind   {@link #QUERY} or {@link #S3_QUERY}.
+     * @param id     ID of query.
+     */
+    public void ensureLocal(String userId, String kind, long id) throws IOException {
+        ResultEntry entry = entries().get(resultId(kind, id));
+        if(isNull(entry) || !entry.userId.equals(userId)) {
+            return;
+        }
+
+        synchronized(entry) {
+            if(entry.state == State.COMPRESSED) {
+                LOGGER.info("Decompressing result {} ...", entry.path);
+                decompress(gzipPath(entry.path), entry.path);
+            } else if(entry.state == State.TIERED) {
+                LOGGER.info("Restoring result {} from {} ...", entry.path, entry.tierKey);
+                restore(entry);
+            }
+            entry.touch();
+            if(entry.state != State.LOCAL) {
+                entry.state = State.LOCAL;
+                save(entry);
+                deleteTierCopy(entry);
+            }
+        }
+    }
+
+    /**
+     * Stops tracking result file of query, removing its compressed and tiered copies and row index.
+     *
+     * @param kind {@link #QUERY} or {@link #S3_QUERY}.
+     * @param id   ID of query.
+     */
+    public void remove(String kind, long id) {
+        ResultEntry entry = entries().remove(resultId(kind, id));
+        if(isNull(entry)) {
+            return;
+        }
+        synchronized(entry) {
+            entry.removed = true;
+            try {
+                deleteLocalCopies(entry);
+                deleteTierCopy(entry);
+                Files.deleteIfExists(statePath(entry.resultId));
+            } catch(IOException | RuntimeException e) {
+                LOGGER.warn("Unable to remove stored copies of result {}", entry.path, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Compresses cold results, then tiers least recently used results of users over quota.
+     * <p>
+     * Copies are written without holding the entry, so reads are not held up meanwhile. A result
+     * read, moved or removed while it was copied keeps its state and the copy is dropped.
+     */
+    void compact() {
+        try {
+            long coldBefore = System.currentTimeMillis() - MINUTES.toMillis(COMPRESS_AFTER_MINUTES.get());
+            for(ResultEntry entry : entries().values()) {
+                Snapshot snapshot;
+                synchronized(entry) {
+                    if(entry.removed || entry.state != State.LOCAL || entry.lastAccess >= coldBefore || !Files.exists(entry.path)) {
+                        continue;
+                    }
+                    snapshot = new Snapshot(entry);
+                }
+                compress(entry, snapshot);
+            }
+
+            Map<String, List<ResultEntry>> byUser = entries().values().stream()
+                    .filter(entry -> entry.state != State.TIERED)
+                    .collect(Collectors.groupingBy(entry -> entry.userId));
+            for(Map.Entry<String, List<ResultEntry>> userEntries : byUser.entrySet()) {
+                enforceQuota(userEntries.getKey(), userEntries.getValue(), coldBefore);
+            }
+        } catch(RuntimeException e) {
+            LOGGER.error("Result store compaction failed", e);
+        }
+    }
+
+    /**
+     * Tiers least recently used results of user until user is back within quota. Results read
+     * within compress window are left alone, they may be about to be served, and so is the most
+     * recent result of user, even when it alone exceeds quota.
+     */
+    private void enforceQuota(String userId, List<ResultEntry> userEntries, long coldBefore) {
+        long quota = USER_QUOTA_MB.get() * MB;
+        long used = userEntries.stream().mapToLong(ResultEntry::localSize).sum();
+        if(used <= quota) {
+            return;
+        }
+        if(isNull(TIER_BUCKET.get())) {
+            LOGGER.warn("User {} uses {} MB of results over quota of {} MB, but no tier bucket is configured",
+                    userId, used / MB, USER_QUOTA_MB.get());
+            return;
+        }
+
+        // snapshot access times, entries may be touched while sorting
+        Map<ResultEntry, Long> lastAccess = userEntries.stream()
+                .collect(Collectors.toMap(entry -> entry, entry -> entry.lastAccess));
+        userEntries.sort(Comparator.comparing(lastAccess::get));
+        for(ResultEntry entry : userEntries.subList(0, userEntries.size() - 1)) {
+            if(used <= quota) {
+                break;
+            }
+            Snapshot snapshot;
+            synchronized(entry) {
+                if(entry.removed || entry.state == State.TIERED || entry.lastAccess >= coldBefore) {
+                    continue;
+                }
+                snapshot = new Snapshot(entry);
+            }
+            long size = entry.localSize();
+            if(tier(entry, snapshot)) {
+                used -= size;
+            }
+        }
+    }
+
+    private void compress(ResultEntry entry, Snapshot snapshot) {
+        Path path = snapshot.path;
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            try(InputStream in = Files.newInputStream(path);
+                OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                in.transferTo(out);
+            }
+            synchronized(entry) {
+                if(!snapshot.isCurrent(entry)) {
+                    LOGGER.info("Result {} was used while compressing, leaving it uncompressed", path);
+                    return;
+                }
+                Files.move(temp, gzipPath(path), REPLACE_EXISTING, ATOMIC_MOVE);
+                entry.state = State.COMPRESSED;
+                save(entry);
+                Files.delete(path);
+                Files.deleteIfExists(ResultRowIndex.indexPath(path));
+            }
+            LOGGER.info("Compressed cold result {}", path);
+        } catch(IOException e) {
+            LOGGER.warn("Unable to compress result {}", path, e);
+        } finally {
+            deleteQuietly(temp);
+        }
+    }
+
+    private boolean tier(ResultEntry entry, Snapshot snapshot) {
+        Path local = snapshot.state == State.COMPRESSED ? gzipPath(snapshot.path) : snapshot.path;
+        String bucket = TIER_BUCKET.get();
+        String key = "results/" + entry.userId + "/" + local.getFileName();
+        try {
+            getTierClient().putObject(bucket, key, local.toFile());
+            synchronized(entry) {
+                if(snapshot.isCurrent(entry)) {
+                    entry.tierBucket = bucket;
+                    entry.tierKey = key;
+                    entry.tierCompressed = snapshot.state == State.COMPRESSED;
+                    entry.state = State.TIERED;
+                    save(entry);
+                    Files.delete(local);
+                    Files.deleteIfExists(ResultRowIndex.indexPath(snapshot.path));
+                    LOGGER.info("Moved result {} of user {} to s3://{}/{}", snapshot.path, entry.userId, bucket, key);
+                    return true;
+                }
+            }
+            LOGGER.info("Result {} was used while moving it to tier bucket, keeping it local", snapshot.path);
+            getTierClient().deleteObject(bucket, key);
+            return false;
+        } catch(IOException | RuntimeException e) {
+            LOGGER.warn("Unable to move result {} to tier bucket", snapshot.path, e);
+            return false;
+        }
+    }
+
+    private void restore(ResultEntry entry) throws IOException {
+        AmazonS3 client = getTierClient();
+        long length = client.getObjectMetadata(entry.tierBucket, entry.tierKey).getContentLength();
+        long chunk = Math.max(1, RANGE_READ_MB.get()) * MB;
+
+        Path temp = Files.createTempFile(entry.path.getParent(), entry.path.getFileName().toString(), ".tmp");
+        try {
+            try(OutputStream out = Files.newOutputStream(temp)) {
+                for(long start = 0; start < length; start += chunk) {
+                    GetObjectRequest request = new GetObjectRequest(entry.tierBucket, entry.tierKey)
+                            .withRange(start, Math.min(start + chunk, length) - 1);
+                    try(S3Object object = client.getObject(request); InputStream in = object.getObjectContent()) {
+                        in.transferTo(out);
+                    }
+                }
+            }
+            if(entry.tierCompressed) {
+                decompress(temp, entry.path);
+            } else {
+                Files.move(temp, entry.path, REPLACE_EXISTING, ATOMIC_MOVE);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Deletes tiered copy of result, once local copy is known to be saved.
+     */
+    private void deleteTierCopy(ResultEntry entry) {
+        if(isNull(entry.tierKey)) {
+            return;
+        }
+        try {
+            getTierClient().deleteObject(entry.tierBucket, entry.tierKey);
+        } catch(RuntimeException e) {
+            // kept in state, deleted again when result is removed
+            LOGGER.warn("Unable to delete s3://{}/{} of result {}", entry.tierBucket, entry.tierKey, entry.path, e);
+            return;
+        }
+        entry.tierBucket = null;
+        entry.tierKey = null;
+        if(!entry.removed) {
+            save(entry);
+        }
+    }
+
+    private void decompress(Path gzip, Path target) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try(InputStream in = new GZIPInputStream(Files.newInputStream(gzip));
+                OutputStream out = Files.newOutputStream(temp)) {
+                in.transferTo(out);
+            }
+            Files.move(temp, target, REPLACE_EXISTING, ATOMIC_MOVE);
+            Files.delete(gzip);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Deletes compressed copy and row index of result. Called with entry locked.
+     */
+    private static void deleteLocalCopies(ResultEntry entry) {
+        try {
+            Files.deleteIfExists(gzipPath(entry.path));
+            Files.deleteIfExists(ResultRowIndex.indexPath(entry.path));
+        } catch(IOException e) {
+            LOGGER.warn("Unable to delete local copies of result {}", entry.path, e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if(isNull(file)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch(IOException e) {
+            LOGGER.warn("Unable to delete {}", file, e);
+        }
+    }
+
+    private static Path gzipPath(Path path) {
+        return path.resolveSibling(path.getFileName() + GZIP_SUFFIX);
+    }
+
+    private static String resultId(String kind, long id) {
+        return kind + "-" + id;
+    }
+
+    private Path statePath(String resultId) {
+        return stateDir.resolve(resultId + STATE_SUFFIX);
+    }
+
+    private ConcurrentMap<String, ResultEntry> entries() {
+        if(!loaded) {
+            loadState();
+        }
+        return entries;
+    }
+
+    /**
+     * Reads saved result state, once, on first use rather than at startup.
+     */
+    private synchronized void loadState() {
+        if(loaded) {
+            return;
+        }
+        if(Files.isDirectory(stateDir)) {
+            try(DirectoryStream<Path> files = Files.newDirectoryStream(stateDir, "*" + STATE_SUFFIX)) {
+                for(Path file : files) {
+                    ResultEntry entry = readState(file);
+                    if(!isNull(entry)) {
+                        entries.putIfAbsent(entry.resultId, entry);
+                    }
+                }
+            } catch(IOException e) {
+                LOGGER.warn("Unable to read result store state from {}", stateDir, e);
+            }
+            LOGGER.info("Loaded state of {} results from {}", entries.size(), stateDir);
+        }
+        loaded = true;
+    }
+
+    private ResultEntry readState(Path file) {
+        String fileName = file.getFileName().toString();
+        Properties properties = new Properties();
+        try(InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+            ResultEntry entry = new ResultEntry(fileName.substring(0, fileName.length() - STATE_SUFFIX.length()),
+                    properties.getProperty("userId"), Paths.get(properties.getProperty("path")));
+            entry.state = State.valueOf(properties.getProperty("state"));
+            entry.lastAccess = Long.parseLong(properties.getProperty("lastAccess", "0"));
+            entry.tierBucket = properties.getProperty("tierBucket");
+            entry.tierKey = properties.getProperty("tierKey");
+            entry.tierCompressed = Boolean.parseBoolean(properties.getProperty("tierCompressed"));
+            return entry;
+        } catch(IOException | RuntimeException e) {
+            LOGGER.warn("Ignoring unreadable result state {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves where result and its copies are. Called with entry locked, whenever that changes.
+     */
+    private void save(ResultEntry entry) {
+        Properties properties = new Properties();
+        properties.setProperty("userId", entry.userId);
+        properties.setProperty("path", entry.path.toString());
+        properties.setProperty("state", entry.state.name());
+        properties.setProperty("lastAccess", Long.toString(entry.lastAccess));
+        if(!isNull(entry.tierKey)) {
+            properties.setProperty("tierBucket", entry.tierBucket);
+            properties.setProperty("tierKey", entry.tierKey);
+            properties.setProperty("tierCompressed", Boolean.toString(entry.tierCompressed));
+        }
+
+        try {
+            Files.createDirectories(stateDir);
+            Path temp = Files.createTempFile(stateDir, entry.resultId, ".tmp");
+            try {
+                try(OutputStream out = Files.newOutputStream(temp)) {
+                    properties.store(out, null);
+                }
+                Files.move(temp, statePath(entry.resultId), REPLACE_EXISTING, ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch(IOException e) {
+            LOGGER.warn("Unable to save state of result {}", entry.path, e);
+        }
+    }
+
+    private AmazonS3 getTierClient() {
+        if(isNull(tierClient)) {
+            synchronized(this) {
+                if(isNull(tierClient)) {
+                    ClientConfiguration clientConfig = new ClientConfiguration().withMaxErrorRetry(MAX_RETRIES.get());
+                    tierClient = AmazonS3Client.builder().withClientConfiguration(clientConfig)
+                            .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(ENDPOINT.get(), REGION.get()))
+                            .withPathStyleAccessEnabled(true)
+                            .withCredentials(new AWSStaticCredentialsProvider(
+                                    new BasicAWSCredentials(TIER_ACCESS_ID.get(), TIER_ACCESS_KEY.get())))
+                            .build();
+                }
+            }
+        }
+        return tierClient;
+    }
+
+    private void addCallbacks() {
+        COMPACTION_MINUTES.addCallback(() -> {
+            LOGGER.info("{} changed to {}! rescheduling result compaction task", COMPACTION_MINUTES.getName(), COMPACTION_MINUTES.get());
+            synchronized(this) {
+                if(!isNull(scheduledFuture)) {
+                    scheduledFuture.cancel(false);
+                }
+                scheduledFuture = executorService.scheduleAtFixedRate(this::compact, COMPACTION_MINUTES.get(), COMPACTION_MINUTES.get(), MINUTES);
+            }
+        });
+        Runnable resetClient = () -> tierClient = null;
+        TIER_ACCESS_ID.addCallback(resetClient);
+        TIER_ACCESS_KEY.addCallback(resetClient);
+    }
+
+    private enum State {
+        LOCAL, COMPRESSED, TIERED
+    }
+
+    private static class ResultEntry {
+        final String resultId;
+        final String userId;
+        volatile Path path;
+        volatile State state = State.LOCAL;
+        volatile long lastAccess;
+        String tierBucket;
+        String tierKey;
+        boolean tierCompressed;
+        boolean removed;
+
+        ResultEntry(String resultId, String userId, Path path) {
+            this.resultId = resultId;
+            this.userId = userId;
+            this.path = path;
+        }
+
+        void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+
+        long localSize() {
+            try {
+                switch(state) {
+                    case LOCAL:
+                        return Files.size(path);
+                    case COMPRESSED:
+                        return Files.size(gzipPath(path));
+                    default:
+                        return 0;
+                }
+            } catch(IOException e) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * State of entry before a copy is made without holding it, to tell whether it changed meanwhile.
+     */
+    private static class Snapshot {
+        final Path path;
+        final State state;
+        final long lastAccess;
+
+        Snapshot(ResultEntry entry) {
+            this.path = entry.path;
+            this.state = entry.state;
+            this.lastAccess = entry.lastAccess;
+        }
+
+        /**
+         * Called with entry locked.
+         */
+        boolean isCurrent(ResultEntry entry) {
+            return !entry.removed && entry.path.equals(path) && entry.state == state && entry.lastAccess == lastAccess;
+        }
+    }
+}
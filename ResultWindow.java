@@ -0,0 +1,45 @@
+package com.dbs.celerity.queryrunner.model;
+
+import java.util.List;
+
+/**
+ * Slice of rows of a query result file.
+ */
+public class ResultWindow {
+    private long offset;
+    private List<String> rows;
+    private long totalRows;
+
+    public ResultWindow() {
+    }
+
+    public ResultWindow(long offset, List<String> rows, long totalRows) {
+        this.offset = offset;
+        this.rows = rows;
+        this.totalRows = totalRows;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(long offset) {
+        this.offset = offset;
+    }
+
+    public List<String> getRows() {
+        return rows;
+    }
+
+    public void setRows(List<String> rows) {
+        this.rows = rows;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+    }
+}
@@ -0,0 +1,108 @@
+package com.dbs.celerity.queryrunner.service.query;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.isNull;
+
+/**
+ * Output stream for result files that writes the row offset index next to the result while it is spilled,
+ * so windowed reads through {@link ResultRowIndex} do not have to scan the file afterwards.
+ * The index only becomes visible once the stream is closed.
+ */
+public class RowIndexingOutputStream extends FilterOutputStream {
+
+    private final Path indexFile;
+    private final Path tempIndexFile;
+    private final Path resultFile;
+    private final Path partFile;
+    private final DataOutputStream index;
+    private long position;
+    private boolean atRowStart = true;
+    private boolean closed;
+
+    /**
+     * @param out        stream of result file.
+     * @param resultFile path of result file, used to place the index next to it.
+     */
+    public RowIndexingOutputStream(OutputStream out, Path resultFile) throws IOException {
+        this(out, resultFile, null);
+    }
+
+    private RowIndexingOutputStream(OutputStream out, Path resultFile, Path partFile) throws IOException {
+        super(out);
+        this.resultFile = resultFile;
+        this.partFile = partFile;
+        this.indexFile = ResultRowIndex.indexPath(resultFile);
+        this.tempIndexFile = Files.createTempFile(resultFile.toAbsolutePath().getParent(), resultFile.getFileName().toString(), ".tmp");
+        this.index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempIndexFile)));
+    }
+
+    /**
+     * Opens result file for spilling. Rows go to a temporary file next to it, which is moved in place
+     * along with its index on close, so a result is never visible half written or without its index.
+     *
+     * @param resultFile path result file should end up at.
+     */
+    public static RowIndexingOutputStream spill(Path resultFile) throws IOException {
+        Path partFile = Files.createTempFile(resultFile.toAbsolutePath().getParent(), resultFile.getFileName().toString(), ".part");
+        try {
+            return new RowIndexingOutputStream(new BufferedOutputStream(Files.newOutputStream(partFile)), resultFile, partFile);
+        } catch(IOException | RuntimeException e) {
+            Files.deleteIfExists(partFile);
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        track((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        for(int i = off; i < off + len; i++) {
+            track(b[i]);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // index is closed even if result stream fails to close
+            try(DataOutputStream indexStream = index) {
+                super.close();
+                indexStream.writeLong(position);
+            }
+            Files.move(tempIndexFile, indexFile, REPLACE_EXISTING, ATOMIC_MOVE);
+            if(!isNull(partFile)) {
+                Files.move(partFile, resultFile, REPLACE_EXISTING, ATOMIC_MOVE);
+            }
+        } finally {
+            Files.deleteIfExists(tempIndexFile);
+            if(!isNull(partFile)) {
+                Files.deleteIfExists(partFile);
+            }
+        }
+    }
+
+    private void track(byte b) throws IOException {
+        if(atRowStart) {
+            index.writeLong(position);
+            atRowStart = false;
+        }
+        if(b == '\n') {
+            atRowStart = true;
+        }
+        position++;
+    }
+}
@@ -0,0 +1,32 @@
+package com.dbs.celerity.queryrunner.api.s3query;
+
+import com.dbs.celerity.queryrunner.api.JsonStreamWriter;
+import com.dbs.celerity.queryrunner.model.S3MetaData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes cached S3MetaData trees straight to the response, one bucket at a time.
+ * <p>
+ * Each bucket goes through data-binding of the given mapper, so it keeps the shape of the
+ * S3MetaData model. NDJSON mode writes one bucket tree per line.
+ */
+public class S3MetaDataJsonWriter extends JsonStreamWriter<S3MetaData> {
+
+    /**
+     * @param out    stream to write to, left open on close.
+     * @param ndjson true to write one bucket per line, false to write a single JSON array.
+     * @param mapper mapper serializing each bucket, the one answering other requests.
+     */
+    public S3MetaDataJsonWriter(OutputStream out, boolean ndjson, ObjectMapper mapper) throws IOException {
+        super(out, ndjson);
+        generator.setCodec(mapper);
+    }
+
+    @Override
+    protected void writeValue(S3MetaData bucket) throws IOException {
+        generator.writeObject(bucket);
+    }
+}
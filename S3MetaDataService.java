@@ -9,34 +9,50 @@ import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.dbs.celerity.queryrunner.model.S3MetaData;
+import com.dbs.celerity.queryrunner.model.SearchHit;
+import com.dbs.celerity.queryrunner.model.SearchResult;
 import com.dbs.celerity.queryrunner.model.UserProfile;
+import com.dbs.celerity.queryrunner.search.TrigramIndex;
+import com.dbs.celerity.queryrunner.service.cluster.ClusterCoordinator;
 import com.dbs.celerity.queryrunner.userdata.entity.S3QueryPermission;
 import com.dbs.celerity.queryrunner.userdata.repo.S3QueryPermissionRepo;
 import com.dbs.celerity.queryrunner.webauth.UserRequestContext;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.config.DynamicBooleanProperty;
 import com.netflix.config.DynamicIntProperty;
 import com.netflix.config.DynamicStringProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import static java.util.Objects.isNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 import static java.util.concurrent.TimeUnit.MINUTES;
 
 /**
  * Service that processes REST API requests for Metadata information.
+ * <p>
+ * Eager with lazy dependencies, so its ready listener stays cheap.
  */
 @Service
+@Lazy(false)
 public class S3MetaDataService {
     private static final Logger LOGGER = LoggerFactory.getLogger(S3MetaDataService.class);
 
@@ -45,26 +61,49 @@ public class S3MetaDataService {
     private static final DynamicIntProperty MAX_RETRIES = new DynamicIntProperty("s3.max-retries", 5);
     private static final DynamicIntProperty RELOAD_MINUTES = new DynamicIntProperty("s3.reload.minutes", 60);
     private static final DynamicBooleanProperty CLEAR_METADATA = new DynamicBooleanProperty("s3.clear.metadata.trigger", false);
+    private static final DynamicIntProperty SEARCH_MAX_HITS = new DynamicIntProperty("search.max-hits", 500);
+    private static final DynamicIntProperty LISTING_THREADS = new DynamicIntProperty("s3.listing.threads", 2);
+    private static final int LISTING_ATTEMPTS = 3;
 
     private Map<String, AmazonS3> bucketClients;
 
     private final S3QueryPermissionRepo s3QueryPermissionRepo;
     private final AtomicReference<Map<String, S3MetaData>> metaDataRef;
     private final ScheduledExecutorService executorService;
+    private final ExecutorService listingExecutor;
     private ScheduledFuture<?> scheduledFuture;
 
     private final ConcurrentMap<String, CacheUserMetadata> userMetadataCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, BucketListing> bucketListings = new ConcurrentHashMap<>();
+    // indexes of buckets listed before last refresh, each updated in place by next listing of its bucket
+    private volatile Map<String, TrigramIndex> refreshedIndexes = new ConcurrentHashMap<>();
+    private final ClusterCoordinator clusterCoordinator;
 
     @Autowired
-    public S3MetaDataService(S3QueryPermissionRepo s3QueryPermissionRepo) {
+    public S3MetaDataService(@Lazy S3QueryPermissionRepo s3QueryPermissionRepo, @Lazy ClusterCoordinator clusterCoordinator) {
         this.s3QueryPermissionRepo = s3QueryPermissionRepo;
+        this.clusterCoordinator = clusterCoordinator;
         this.metaDataRef = new AtomicReference<>(new HashMap());
-        this.bucketClients = new HashMap<>();
+        this.bucketClients = new ConcurrentHashMap<>();
         this.executorService = newSingleThreadScheduledExecutor();
-        this.scheduledFuture = executorService.scheduleAtFixedRate(this::clearMetadata, 0, RELOAD_MINUTES.get(), MINUTES);
+        this.listingExecutor = newFixedThreadPool(LISTING_THREADS.get(),
+                new ThreadFactoryBuilder().setNameFormat("s3-listing-%d").setDaemon(true).build());
         addCallbacks();
     }
 
+    /**
+     * Starts metadata reload schedule once application takes traffic. Cache starts empty,
+     * so first reload is only due after a full period. Joining cluster refreshes happens on
+     * reload executor, keeping the coordinator off the startup thread.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void scheduleReload() {
+        executorService.execute(() -> clusterCoordinator.onRefresh(this::clearMetadata));
+        if(isNull(scheduledFuture)) {
+            scheduledFuture = executorService.scheduleAtFixedRate(this::reloadMetadata, RELOAD_MINUTES.get(), RELOAD_MINUTES.get(), MINUTES);
+        }
+    }
+
     /**
      * Gets metadata information for current user.
      *
@@ -92,6 +131,52 @@ public class S3MetaDataService {
         return bucketClients.get(bucket);
     }
 
+    /**
+     * Searches objects and folders of bucket by path, if current user can access bucket.
+     * Never lists bucket itself: if it is not listed yet, listing starts in the background and
+     * result is flagged as indexing, covering objects listed so far. After a refresh, that includes
+     * objects of previous listing until listing completes.
+     *
+     * @param bucket bucket to search.
+     * @param query  text to look for in paths, at least 2 characters.
+     * @param limit  maximum number of hits, capped by search.max-hits.
+     * @return Best matches first, along with index size, or empty if bucket is not accessible.
+     */
+    public Optional<SearchResult> search(String bucket, String query, int limit) {
+        String key = bucket.toLowerCase();
+        S3QueryPermission permission = getUserPermissions().permissions.get(key);
+        if(isNull(permission)) {
+            return Optional.empty();
+        }
+        BucketListing listing = bucketListings.get(key);
+        if(isNull(listing)) {
+            bucketClients.computeIfAbsent(permission.getBucket(),
+                    e -> createClient(permission.getAccessId(), permission.getAccessKey()));
+            listing = listBucket(permission.getBucket());
+        }
+
+        TrigramIndex index = listing.index;
+        long start = System.nanoTime();
+        TrigramIndex.Result result = index.search(query, Math.min(limit, SEARCH_MAX_HITS.get()));
+        List<SearchHit> hits = new ArrayList<>(result.getMatches().size());
+        for(TrigramIndex.Match match : result.getMatches()) {
+            hits.add(new SearchHit(match.getPath(), match.getName(), match.isFile(), null, match.getScore()));
+        }
+        long tookMs = (System.nanoTime() - start) / 1_000_000;
+        return Optional.of(new SearchResult(query, hits, result.getTotal(), result.isApproximate(), tookMs, index.size(),
+                index.estimateBytes(), !listing.metadata.isDone()));
+    }
+
+    /**
+     * Retrieves buckets current user can access, from cached metadata of user if any. Otherwise they are
+     * cached on their own, until user requests metadata.
+     */
+    private CacheUserMetadata getUserPermissions() {
+        UserProfile userProfile = UserRequestContext.getOrThrow();
+        return userMetadataCache.computeIfAbsent(userProfile.getUserId(),
+                e -> newCacheEntry(s3QueryPermissionRepo.findByGroupInOrderByBucketAsc(userProfile.getGroups())));
+    }
+
     /**
      * Retrieves metadata of current user.
      *
@@ -116,22 +201,17 @@ public class S3MetaDataService {
         Map<String, S3MetaData> allMetadata = metaDataRef.get();
         Map<String, S3MetaData> userMetadata = new HashMap<>();
 
-        CacheUserMetadata cacheEntry = new CacheUserMetadata();
-
         List<S3QueryPermission> permissions = s3QueryPermissionRepo.findByGroupInOrderByBucketAsc(userProfile.getGroups());
-        cacheEntry.allowedBuckets = permissions.stream().map(permission -> permission.getBucket().toLowerCase()).collect(Collectors.toSet());
+        CacheUserMetadata cacheEntry = newCacheEntry(permissions);
 
         for(S3QueryPermission permission : permissions) {
             String bucket = permission.getBucket();
 
-            if(!bucketClients.containsKey(bucket)) {
-                bucketClients.put(bucket, createClient(permission.getAccessId(), permission.getAccessKey()));
-            }
-
             if(allMetadata.containsKey(bucket)) {
+                bucketClients.computeIfAbsent(bucket, e -> createClient(permission.getAccessId(), permission.getAccessKey()));
                 userMetadata.put(bucket, allMetadata.get(bucket));
             } else {
-                S3MetaData bucketMetadata = getBucketMetadata(bucket);
+                S3MetaData bucketMetadata = awaitListing(permission);
 
                 userMetadata.put(bucket, bucketMetadata);
                 allMetadata.put(bucket, bucketMetadata);
@@ -143,20 +223,58 @@ public class S3MetaDataService {
         metaDataRef.set(allMetadata);
     }
 
+    /**
+     * Triggers metadata reload on every node. Only cluster leader triggers reloads on schedule,
+     * so replicas drop their caches together instead of each on its own timer.
+     */
+    private void reloadMetadata() {
+        if(clusterCoordinator.isLeader()) {
+            clusterCoordinator.publishRefresh();
+        }
+    }
+
     private void clearMetadata() {
         this.metaDataRef.set(new HashMap<>());
+        Map<String, TrigramIndex> indexes = new ConcurrentHashMap<>();
+        for(String key : bucketListings.keySet()) {
+            BucketListing listing = bucketListings.remove(key);
+            if(!isNull(listing)) {
+                listing.metadata.cancel(true);
+                indexes.put(key, listing.index);
+            }
+        }
+        // indexes of buckets nobody listed since previous refresh are dropped
+        this.refreshedIndexes = indexes;
         this.bucketClients.clear();
     }
 
+    private static CacheUserMetadata newCacheEntry(List<S3QueryPermission> permissions) {
+        CacheUserMetadata cacheEntry = new CacheUserMetadata();
+        cacheEntry.userMetadata = Collections.emptyMap();
+        cacheEntry.permissions = new HashMap<>();
+        for(S3QueryPermission permission : permissions) {
+            cacheEntry.permissions.putIfAbsent(permission.getBucket().toLowerCase(), permission);
+        }
+        cacheEntry.allowedBuckets = cacheEntry.permissions.keySet();
+        return cacheEntry;
+    }
+
     private void addCallbacks() {
         RELOAD_MINUTES.addCallback(() -> {
             LOGGER.info("{} changed to {}! rescheduling metadata reload task", RELOAD_MINUTES.getName(), RELOAD_MINUTES.get());
-            scheduledFuture.cancel(false);
-            scheduledFuture = executorService.scheduleAtFixedRate(this::clearMetadata, 0, RELOAD_MINUTES.get(), MINUTES);
+            synchronized(this) {
+                if(!isNull(scheduledFuture)) {
+                    scheduledFuture.cancel(false);
+                }
+                scheduledFuture = executorService.scheduleAtFixedRate(this::reloadMetadata, 0, RELOAD_MINUTES.get(), MINUTES);
+            }
         });
         CLEAR_METADATA.addCallback(() -> {
-            LOGGER.info("Clearing user metadata!");
-            clearMetadata();
+            // property changes reach every node, leader alone signals refresh
+            if(clusterCoordinator.isLeader()) {
+                LOGGER.info("Clearing user metadata!");
+                clusterCoordinator.publishRefresh();
+            }
         });
     }
 
@@ -171,12 +289,89 @@ public class S3MetaDataService {
                 .build();
     }
 
-    private S3MetaData getBucketMetadata(String bucket) {
+    /**
+     * Starts listing bucket in the background, unless it is already listed or being listed. Its search index
+     * is available right away and fills as objects are listed, or is index of previous listing, updated in place.
+     * Client of bucket must be created first.
+     */
+    private BucketListing listBucket(String bucket) {
+        String key = bucket.toLowerCase();
+        return bucketListings.computeIfAbsent(key, e -> {
+            TrigramIndex previous = refreshedIndexes.remove(key);
+            BucketListing listing = new BucketListing(isNull(previous) ? new TrigramIndex() : previous);
+            AmazonS3 bucketClient = bucketClients.get(bucket);
+            listing.metadata = listingExecutor.submit(() -> {
+                // a cancelled listing may still be updating index it handed over
+                synchronized(listing.index) {
+                    try {
+                        S3MetaData bucketMetadata = getBucketMetadata(bucketClient, bucket, listing.index);
+                        listing.index.compact();
+                        LOGGER.info("Indexed {} entries of bucket {} for search, about {} KB",
+                                listing.index.size(), bucket, listing.index.estimateBytes() / 1024);
+                        return bucketMetadata;
+                    } catch(RuntimeException ex) {
+                        if(ex instanceof CancellationException || Thread.currentThread().isInterrupted()) {
+                            LOGGER.info("Listing of bucket {} cancelled", bucket);
+                        } else {
+                            LOGGER.error("Unable to list bucket {}", bucket, ex);
+                        }
+                        // next request lists again
+                        bucketListings.remove(key, listing);
+                        throw ex;
+                    }
+                }
+            });
+            return listing;
+        });
+    }
+
+    /**
+     * Lists bucket, or waits for listing already in progress. Listing cancelled by a metadata refresh
+     * is started again, up to {@code LISTING_ATTEMPTS} times.
+     */
+    private S3MetaData awaitListing(S3QueryPermission permission) {
+        String bucket = permission.getBucket();
+        for(int attempt = 1; ; attempt++) {
+            // refresh drops clients along with listings
+            bucketClients.computeIfAbsent(bucket, e -> createClient(permission.getAccessId(), permission.getAccessKey()));
+            BucketListing listing = listBucket(bucket);
+            try {
+                return listing.metadata.get();
+            } catch(CancellationException e) {
+                bucketListings.remove(bucket.toLowerCase(), listing);
+                if(attempt >= LISTING_ATTEMPTS) {
+                    throw new IllegalStateException("Listing of bucket " + bucket + " cancelled " + attempt + " times", e);
+                }
+                LOGGER.info("Listing of bucket {} cancelled by metadata refresh, listing again", bucket);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while listing bucket " + bucket, e);
+            } catch(ExecutionException e) {
+                if(e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Unable to list bucket " + bucket, e.getCause());
+            }
+        }
+    }
+
+    static S3MetaData getBucketMetadata(AmazonS3 bucketClient, String bucket) {
+        return getBucketMetadata(bucketClient, bucket, null);
+    }
+
+    /**
+     * Lists every object of bucket into a tree. Index, if given, is brought in line with bucket on the way:
+     * folders and objects new to it are added, and once listing completes, those no longer in bucket removed.
+     * Stops with CancellationException once thread is interrupted.
+     */
+    static S3MetaData getBucketMetadata(AmazonS3 bucketClient, String bucket, TrigramIndex index) {
         S3MetaData bucketMetadata = new S3MetaData(bucket);
-        AmazonS3 bucketClient = bucketClients.get(bucket);
         ObjectListing objectListing = null;
 
         do {
+            if(Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Listing of bucket " + bucket + " interrupted");
+            }
             if(isNull(objectListing)) {
                 objectListing = bucketClient.listObjects(bucket);
             } else {
@@ -187,17 +382,47 @@ public class S3MetaDataService {
 
             for(S3ObjectSummary object : listObjects) {
                 String objectPath = object.getKey();
-                buildTree(objectPath, bucketMetadata);
+                buildTree(objectPath, bucketMetadata, index);
             }
         } while(objectListing.isTruncated());
 
+        if(!isNull(index)) {
+            removeMissing(index, TrigramIndex.ROOT, bucketMetadata);
+        }
         return bucketMetadata;
     }
 
-    private void buildTree(String objectPath, S3MetaData bucketData) {
+    /**
+     * Removes children of index node missing from children of tree node, and does the same below the others.
+     */
+    private static void removeMissing(TrigramIndex index, int indexNode, S3MetaData treeNode) {
+        Map<String, S3MetaData> children = new HashMap<>();
+        for(S3MetaData child : treeNode.getChildren()) {
+            children.put(child.getName(), child);
+        }
+        for(int child : index.children(indexNode)) {
+            S3MetaData treeChild = children.get(index.name(child));
+            if(isNull(treeChild)) {
+                index.remove(child);
+            } else {
+                removeMissing(index, child, treeChild);
+            }
+        }
+    }
+
+    static void buildTree(String objectPath, S3MetaData bucketData) {
+        buildTree(objectPath, bucketData, null);
+    }
+
+    /**
+     * Adds object to tree, and each folder and object new to tree to index if given, linked to its parent,
+     * unless index already holds it.
+     */
+    static void buildTree(String objectPath, S3MetaData bucketData, TrigramIndex index) {
         String[] nodes = objectPath.split("/");
 
         S3MetaData parent = bucketData;
+        int indexNode = TrigramIndex.ROOT;
 
         for(int i = 0; i < nodes.length; i++) {
             boolean childExists = false;
@@ -211,6 +436,9 @@ public class S3MetaDataService {
                     break;
                 }
             }
+            if(childExists && !isNull(index)) {
+                indexNode = index.child(indexNode, nodeName);
+            }
 
             if(!childExists) {
                 S3MetaData currentNode = new S3MetaData(nodeName);
@@ -222,12 +450,30 @@ public class S3MetaDataService {
                 }
 
                 parent = parent.addChild(currentNode);
+                if(!isNull(index)) {
+                    indexNode = index.sync(indexNode, nodeName, i == (nodes.length - 1));
+                }
             }
         }
     }
 
     private static class CacheUserMetadata {
+        // empty until user requests metadata
         Map<String, S3MetaData> userMetadata;
         Set<String> allowedBuckets;
+        // by lower case bucket name
+        Map<String, S3QueryPermission> permissions;
+    }
+
+    /**
+     * Listing of a bucket, complete or in progress, along with its search index.
+     */
+    private static class BucketListing {
+        final TrigramIndex index;
+        Future<S3MetaData> metadata;
+
+        BucketListing(TrigramIndex index) {
+            this.index = index;
+        }
     }
 }
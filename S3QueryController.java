@@ -1,13 +1,18 @@
 package com.dbs.celerity.queryrunner.api.s3query;
 
+import com.dbs.celerity.queryrunner.api.JsonStreamWriter;
 import com.dbs.celerity.queryrunner.model.S3MetaData;
+import com.dbs.celerity.queryrunner.model.SearchResult;
+import com.dbs.celerity.queryrunner.service.cluster.ClusterCoordinator;
 import com.dbs.celerity.queryrunner.service.metadata.S3MetaDataService;
+import com.dbs.celerity.queryrunner.service.resultstore.ResultStoreService;
 import com.dbs.celerity.queryrunner.service.s3query.S3QueryService;
 import com.dbs.celerity.queryrunner.userdata.converter.EntityDtoConverter;
 import com.dbs.celerity.queryrunner.userdata.dto.S3QueryDto;
 import com.dbs.celerity.queryrunner.userdata.entity.S3Query;
 import com.dbs.celerity.queryrunner.userdata.repo.S3QueryRepo;
 import com.dbs.celerity.queryrunner.webauth.UserRequestContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,7 +22,9 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -37,20 +44,66 @@ public class S3QueryController {
     private final S3MetaDataService s3MetaDataService;
     private final S3QueryService s3QueryService;
     private final EntityDtoConverter entityDtoConverter;
+    private final ResultStoreService resultStoreService;
+    private final ClusterCoordinator clusterCoordinator;
+    private final ObjectMapper objectMapper;
 
     @Autowired
     public S3QueryController(S3QueryRepo s3QueryRepo, S3QueryService s3QueryService, S3MetaDataService s3MetaDataService,
-                             EntityDtoConverter entityDtoConverter) {
+                             EntityDtoConverter entityDtoConverter, ResultStoreService resultStoreService,
+                             ClusterCoordinator clusterCoordinator, ObjectMapper objectMapper) {
         this.s3QueryRepo = s3QueryRepo;
         this.s3QueryService = s3QueryService;
         this.s3MetaDataService = s3MetaDataService;
         this.entityDtoConverter = entityDtoConverter;
+        this.resultStoreService = resultStoreService;
+        this.clusterCoordinator = clusterCoordinator;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * REST API called when retrieving S3 metadata of current user.
+     * Cached bucket trees are written to the response bucket by bucket.
+     *
+     * @param format "json" for nested bucket trees, "ndjson" for one bucket tree per line.
+     * @return Streamed metadata of accessible buckets.
+     */
     @GetMapping("/metadata")
-    public List<S3MetaData> getMetadata() {
+    public ResponseEntity<StreamingResponseBody> getMetadata(@RequestParam(defaultValue = "json") String format) {
         LOGGER.info("Processing S3 metadata request ...");
-        return s3MetaDataService.getMetadata();
+        // resolved on request thread, user context is not available while streaming
+        List<S3MetaData> buckets = s3MetaDataService.getMetadata();
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+
+        StreamingResponseBody body = out -> {
+            try(S3MetaDataJsonWriter writer = new S3MetaDataJsonWriter(out, ndjson, objectMapper)) {
+                try {
+                    for(S3MetaData bucket : buckets) {
+                        writer.write(bucket);
+                    }
+                } catch(IOException | RuntimeException e) {
+                    writer.fail(e);
+                    throw e;
+                }
+                LOGGER.info("Finished S3 metadata request, {} buckets written", writer.getCount());
+            }
+        };
+        return ok().contentType(ndjson ? JsonStreamWriter.APPLICATION_NDJSON : MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * REST API called when searching objects and folders of a bucket by path.
+     *
+     * @param bucket bucket to search.
+     * @param q      text to look for in paths, at least 2 characters.
+     * @param limit  maximum number of hits.
+     * @return Code 200(OK) with best matches first, or Code 404(NOT FOUND) if bucket is not accessible.
+     */
+    @GetMapping(path = "/search", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<SearchResult> search(@RequestParam String bucket, @RequestParam String q,
+                                               @RequestParam(defaultValue = "50") int limit) {
+        LOGGER.info("Processing S3 search request {} in {} ...", q, bucket);
+        return s3MetaDataService.search(bucket, q, limit).map(ResponseEntity::ok).orElseGet(() -> notFound().build());
     }
 
     @GetMapping("/buckets")
@@ -90,6 +143,7 @@ public class S3QueryController {
         LOGGER.info("Processing query execute request {} ...", request.toString());
         S3Query queryRequest = entityDtoConverter.convertToS3QueryEntity(request);
         S3Query query = s3QueryService.executeQuery(queryRequest);
+        clusterCoordinator.registerQuery(ClusterCoordinator.S3_QUERY, String.valueOf(query.getId()));
         return entityDtoConverter.convertToS3QueryDto(query);
     }
 
@@ -103,12 +157,18 @@ public class S3QueryController {
     @DeleteMapping(path = "/delete/{id}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<Map<String, Object>> deleteQuery(@PathVariable long id) {
         LOGGER.info("Processing query delete from history request {} ...", id);
-        return ok(Collections.singletonMap("success", s3QueryService.deleteQuery(id)));
+        Object success = s3QueryService.deleteQuery(id);
+        if(Boolean.TRUE.equals(success)) {
+            resultStoreService.remove(ResultStoreService.S3_QUERY, id);
+            clusterCoordinator.unregisterQuery(ClusterCoordinator.S3_QUERY, String.valueOf(id));
+        }
+        return ok(Collections.singletonMap("success", success));
     }
 
     @GetMapping(path = "/result/{id}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<InputStreamResource> getQueryResult(@PathVariable long id) {
+    public ResponseEntity<InputStreamResource> getQueryResult(@PathVariable long id) throws IOException {
         LOGGER.info("Processing query get result request {} ...", id);
+        restoreResultFile(id);
         InputStreamResource stream = s3QueryService.getResultFile(id);
 
         if(stream != null) {
@@ -119,9 +179,9 @@ public class S3QueryController {
     }
 
     @GetMapping(path = "/download/{id}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<FileSystemResource> downloadFile(@PathVariable long id) {
+    public ResponseEntity<FileSystemResource> downloadFile(@PathVariable long id) throws IOException {
         LOGGER.info("Processing file download request {} ...", id);
-        FileSystemResource file = s3QueryService.downloadResultFile(id);
+        FileSystemResource file = restoreResultFile(id);
 
         if(file != null) {
             String filename = file.getFilename().replaceAll("[\\\\/:*?\"<>|]", "_");
@@ -138,6 +198,24 @@ public class S3QueryController {
         LOGGER.info("Processing S3 download request {}...", downloadRequest.toString());
         S3Query request = entityDtoConverter.convertToS3QueryEntity(downloadRequest);
         S3Query response = s3QueryService.downloadS3File(request);
+        clusterCoordinator.registerQuery(ClusterCoordinator.S3_QUERY, String.valueOf(response.getId()));
         return entityDtoConverter.convertToS3QueryDto(response);
     }
+
+    /**
+     * Brings result file of query back to local disk if result store compressed or tiered it,
+     * then looks it up. Restore goes first since lookup cannot find a file that was moved away.
+     *
+     * @param id ID of query.
+     * @return Result file, null if not available.
+     */
+    private FileSystemResource restoreResultFile(long id) throws IOException {
+        String userId = UserRequestContext.getUserId();
+        resultStoreService.ensureLocal(userId, ResultStoreService.S3_QUERY, id);
+        FileSystemResource file = s3QueryService.downloadResultFile(id);
+        if(file != null && file.exists()) {
+            resultStoreService.register(userId, ResultStoreService.S3_QUERY, id, file.getFile().toPath());
+        }
+        return file;
+    }
 }
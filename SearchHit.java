@@ -0,0 +1,63 @@
+package com.dbs.celerity.queryrunner.model;
+
+/**
+ * Single match of a file or S3 search.
+ */
+public class SearchHit {
+    private String path;
+    private String name;
+    private boolean isFile;
+    private String url;
+    private int score;
+
+    public SearchHit() {
+    }
+
+    public SearchHit(String path, String name, boolean isFile, String url, int score) {
+        this.path = path;
+        this.name = name;
+        this.isFile = isFile;
+        this.url = url;
+        this.score = score;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public boolean getIsFile() {
+        return isFile;
+    }
+
+    public void setIsFile(boolean isFile) {
+        this.isFile = isFile;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public void setScore(int score) {
+        this.score = score;
+    }
+}
@@ -0,0 +1,105 @@
+package com.dbs.celerity.queryrunner.model;
+
+import java.util.List;
+
+/**
+ * Best matches of a file or S3 search, with size of the index that answered it.
+ */
+public class SearchResult {
+    private String query;
+    private List<SearchHit> hits;
+    private int total;
+    private boolean totalApproximate;
+    private long tookMs;
+    private int indexEntries;
+    private long indexBytes;
+    private boolean indexing;
+
+    public SearchResult() {
+    }
+
+    public SearchResult(String query, List<SearchHit> hits, int total, boolean totalApproximate, long tookMs,
+                        int indexEntries, long indexBytes, boolean indexing) {
+        this.query = query;
+        this.hits = hits;
+        this.total = total;
+        this.totalApproximate = totalApproximate;
+        this.tookMs = tookMs;
+        this.indexEntries = indexEntries;
+        this.indexBytes = indexBytes;
+        this.indexing = indexing;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public List<SearchHit> getHits() {
+        return hits;
+    }
+
+    public void setHits(List<SearchHit> hits) {
+        this.hits = hits;
+    }
+
+    /**
+     * @return Number of all matches, hits holding only the best of them.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    /**
+     * @return true if total is estimated, as too many entries matched to rank them all.
+     */
+    public boolean isTotalApproximate() {
+        return totalApproximate;
+    }
+
+    public void setTotalApproximate(boolean totalApproximate) {
+        this.totalApproximate = totalApproximate;
+    }
+
+    public long getTookMs() {
+        return tookMs;
+    }
+
+    public void setTookMs(long tookMs) {
+        this.tookMs = tookMs;
+    }
+
+    public int getIndexEntries() {
+        return indexEntries;
+    }
+
+    public void setIndexEntries(int indexEntries) {
+        this.indexEntries = indexEntries;
+    }
+
+    public long getIndexBytes() {
+        return indexBytes;
+    }
+
+    public void setIndexBytes(long indexBytes) {
+        this.indexBytes = indexBytes;
+    }
+
+    /**
+     * @return True while index is still being built, hits then only cover entries indexed so far.
+     */
+    public boolean isIndexing() {
+        return indexing;
+    }
+
+    public void setIndexing(boolean indexing) {
+        this.indexing = indexing;
+    }
+}
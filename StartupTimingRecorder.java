@@ -0,0 +1,147 @@
+package com.dbs.celerity.queryrunner.startup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.context.event.ApplicationContextInitializedEvent;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.event.ApplicationStartingEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Records how long each startup phase and the slowest beans took, and reports them as JSON
+ * once application is ready. Times are in milliseconds since JVM start, bean times include
+ * creation of their dependencies.
+ * <p>
+ * Registered in {@code META-INF/spring.factories} rather than as a bean, so it sees the phases before
+ * any bean exists. It runs first among listeners of each event, and reports only once every
+ * {@link ApplicationReadyEvent} listener is done, when application starts accepting traffic.
+ * <p>
+ * Only records with {@code celerity.startup.timing.enabled=true}, otherwise it stops once environment
+ * is prepared and never sees a bean. Report is logged, and written to {@code celerity.startup.timing-file} when set.
+ */
+public class StartupTimingRecorder implements InstantiationAwareBeanPostProcessor, ApplicationListener<ApplicationEvent>, Ordered {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupTimingRecorder.class);
+
+    private static final String ENABLED_PROPERTY = "celerity.startup.timing.enabled";
+    private static final String TIMING_FILE_PROPERTY = "celerity.startup.timing-file";
+    private static final int SLOWEST_BEANS = 15;
+
+    private final Map<String, Long> phases = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> beanStarts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> beanTimes = new ConcurrentHashMap<>();
+    private volatile boolean recording = true;
+    private volatile Environment environment;
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) {
+        if(recording) {
+            beanStarts.putIfAbsent(beanName, System.nanoTime());
+        }
+        return null;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        Long start = beanStarts.remove(beanName);
+        if(recording && start != null) {
+            beanTimes.put(beanName, (System.nanoTime() - start) / 1_000_000);
+        }
+        return bean;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if(!recording) {
+            return;
+        }
+        if(event instanceof ApplicationStartingEvent) {
+            phases.putIfAbsent("applicationStarting", uptime());
+        } else if(event instanceof ApplicationEnvironmentPreparedEvent) {
+            environment = ((ApplicationEnvironmentPreparedEvent) event).getEnvironment();
+            if(!environment.getProperty(ENABLED_PROPERTY, Boolean.class, false)) {
+                recording = false;
+                phases.clear();
+                return;
+            }
+            phases.putIfAbsent("environmentPrepared", uptime());
+        } else if(event instanceof ApplicationContextInitializedEvent) {
+            ApplicationContextInitializedEvent initialized = (ApplicationContextInitializedEvent) event;
+            if(phases.putIfAbsent("contextCreated", uptime()) == null) {
+                initialized.getApplicationContext().getBeanFactory().addBeanPostProcessor(this);
+            }
+        } else if(event instanceof ApplicationPreparedEvent) {
+            phases.putIfAbsent("contextPrepared", uptime());
+        } else if(event instanceof ContextRefreshedEvent) {
+            phases.putIfAbsent("contextRefreshed", uptime());
+        } else if(event instanceof ApplicationStartedEvent) {
+            phases.putIfAbsent("applicationStarted", uptime());
+        } else if(event instanceof ApplicationReadyEvent) {
+            phases.putIfAbsent("applicationReady", uptime());
+        } else if(event instanceof AvailabilityChangeEvent
+                && ((AvailabilityChangeEvent<?>) event).getState() == ReadinessState.ACCEPTING_TRAFFIC) {
+            phases.put("acceptingTraffic", uptime());
+            recording = false;
+            report();
+        }
+    }
+
+    private void report() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("phases", phases.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new)));
+        report.put("slowestBeans", beanTimes.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(SLOWEST_BEANS)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new)));
+        beanStarts.clear();
+        beanTimes.clear();
+
+        try {
+            String json = new ObjectMapper().writeValueAsString(report);
+            LOGGER.info("Startup timing: {}", json);
+
+            String timingFile = environment == null ? null : environment.getProperty(TIMING_FILE_PROPERTY);
+            if(timingFile != null) {
+                Files.write(Paths.get(timingFile), json.getBytes(UTF_8));
+            }
+        } catch(JsonProcessingException e) {
+            LOGGER.warn("Unable to serialize startup timing", e);
+        } catch(IOException e) {
+            LOGGER.warn("Unable to write startup timing file", e);
+        }
+    }
+
+    private static long uptime() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
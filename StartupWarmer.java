@@ -0,0 +1,84 @@
+package com.dbs.celerity.queryrunner.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Completes startup in lazy mode ({@code spring.main.lazy-initialization=true}): once application
+ * reports ready and takes traffic, creates remaining singletons in the background and opens a first
+ * connection of every datasource pool, so first users do not pay for it.
+ * <p>
+ * Requests run meanwhile. Bean factory creates each singleton once under its own lock, so a request needing
+ * a bean the warmer is creating waits for it rather than creating a second one. Beans must therefore not
+ * wait in their constructor or init method for another thread that itself creates beans.
+ */
+@Component
+public class StartupWarmer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupWarmer.class);
+
+    private static final String LAZY_INIT_PROPERTY = "spring.main.lazy-initialization";
+
+    private final ConfigurableListableBeanFactory beanFactory;
+    private final Environment environment;
+
+    @Autowired
+    public StartupWarmer(ConfigurableListableBeanFactory beanFactory, Environment environment) {
+        this.beanFactory = beanFactory;
+        this.environment = environment;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if(!environment.getProperty(LAZY_INIT_PROPERTY, Boolean.class, false)) {
+            return;
+        }
+        Thread warmer = new Thread(this::warmUp, "startup-warmer");
+        warmer.setDaemon(true);
+        warmer.start();
+    }
+
+    private void warmUp() {
+        long start = System.currentTimeMillis();
+        int beans = 0;
+        int pools = 0;
+
+        for(String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if(definition.isAbstract() || !definition.isSingleton() || beanFactory.containsSingleton(name)) {
+                continue;
+            }
+            try {
+                Object bean = beanFactory.getBean(name);
+                beans++;
+                if(bean instanceof DataSource && warmPool(name, (DataSource) bean)) {
+                    pools++;
+                }
+            } catch(BeansException e) {
+                LOGGER.warn("Unable to initialize bean {} during warm-up", name, e);
+            }
+        }
+        LOGGER.info("Startup warm-up created {} beans and opened {} datasource pools in {} ms",
+                beans, pools, System.currentTimeMillis() - start);
+    }
+
+    private boolean warmPool(String name, DataSource dataSource) {
+        try(Connection connection = dataSource.getConnection()) {
+            return connection.isValid(5);
+        } catch(SQLException e) {
+            LOGGER.warn("Unable to open connection of datasource {} during warm-up", name, e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.dbs.celerity.queryrunner.model;
+
+import java.util.Set;
+
+/**
+ * Fields of a single table, identified by datasource type, database and table name.
+ * Used both as batch lookup request entry (fields empty) and as its answer, where error
+ * tells a failed lookup apart from a table without fields.
+ */
+public class TableFields {
+    private String ds;
+    private String db;
+    private String table;
+    private Set<String> fields;
+    private boolean error;
+
+    public TableFields() {
+    }
+
+    public TableFields(String ds, String db, String table, Set<String> fields) {
+        this.ds = ds;
+        this.db = db;
+        this.table = table;
+        this.fields = fields;
+    }
+
+    public String getDs() {
+        return ds;
+    }
+
+    public void setDs(String ds) {
+        this.ds = ds;
+    }
+
+    public String getDb() {
+        return db;
+    }
+
+    public void setDb(String db) {
+        this.db = db;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    public void setFields(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    public boolean isError() {
+        return error;
+    }
+
+    public void setError(boolean error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "TableFields{" +
+                "ds='" + ds + '\'' +
+                ", db='" + db + '\'' +
+                ", table='" + table + '\'' +
+                '}';
+    }
+}
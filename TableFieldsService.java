@@ -0,0 +1,182 @@
+package com.dbs.celerity.queryrunner.service.metadata;
+
+import com.dbs.celerity.queryrunner.model.TableFields;
+import com.dbs.celerity.queryrunner.webauth.UserRequestContext;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.netflix.config.DynamicIntProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static java.util.Objects.isNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * Resolves table fields for the query editor, in batches and through a shared cache,
+ * so autocomplete does not cost one metastore lookup per table and per page load.
+ */
+@Service
+public class TableFieldsService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableFieldsService.class);
+
+    private static final DynamicIntProperty CACHE_MINUTES = new DynamicIntProperty("query.fields.cache.minutes", 10);
+    private static final DynamicIntProperty CACHE_SIZE = new DynamicIntProperty("query.fields.cache.size", 10000);
+    private static final DynamicIntProperty BATCH_MAX = new DynamicIntProperty("query.fields.batch.max", 500);
+    private static final DynamicIntProperty BATCH_TIMEOUT_MS = new DynamicIntProperty("query.fields.batch.timeout.ms", 10000);
+
+    private final MetaDataService metaDataService;
+    private volatile Cache<TableKey, Set<String>> fieldsCache;
+
+    @Autowired
+    public TableFieldsService(MetaDataService metaDataService) {
+        this.metaDataService = metaDataService;
+        this.fieldsCache = createCache();
+        addCallbacks();
+    }
+
+    /**
+     * Gets fields of a single table for current user.
+     *
+     * @return Set of table fields.
+     */
+    public Set<String> getTableFields(String ds, String db, String table) {
+        TableKey key = new TableKey(UserRequestContext.getUserId(), requireName(ds, "ds"), requireName(db, "db"),
+                requireName(table, "table"));
+        try {
+            return fieldsCache.get(key, () -> metaDataService.getTableFields(ds, db, table));
+        } catch(ExecutionException | UncheckedExecutionException e) {
+            throwIfUnchecked(e.getCause());
+            throw new IllegalStateException("Failed to retrieve fields of " + db + "." + table + " in " + ds, e.getCause());
+        }
+    }
+
+    /**
+     * Gets fields of several tables for current user. Duplicate entries are looked up once, and a table
+     * that cannot be resolved comes back with error set instead of failing the batch.
+     * <p>
+     * Lookups run one after the other on the request thread, since metastore resolves visible tables
+     * from its user context. Once {@code query.fields.batch.timeout.ms} has passed, tables missing from
+     * cache are no longer looked up and come back with error set.
+     *
+     * @param tables tables to retrieve fields for.
+     * @return List of tables with their fields, in request order.
+     */
+    public List<TableFields> getTableFields(List<TableFields> tables) {
+        return getTableFields(UserRequestContext.getOrThrow().getUserId(), tables);
+    }
+
+    List<TableFields> getTableFields(String userId, List<TableFields> tables) {
+        if(tables.size() > BATCH_MAX.get()) {
+            throw new ResponseStatusException(BAD_REQUEST, "At most " + BATCH_MAX.get() + " tables per request");
+        }
+        for(TableFields table : tables) {
+            if(isNull(table)) {
+                throw new ResponseStatusException(BAD_REQUEST, "Table entry must not be null");
+            }
+            requireName(table.getDs(), "ds");
+            requireName(table.getDb(), "db");
+            requireName(table.getTable(), "table");
+        }
+
+        long deadline = System.nanoTime() + MILLISECONDS.toNanos(BATCH_TIMEOUT_MS.get());
+        Map<TableKey, Optional<Set<String>>> resolved = new HashMap<>();
+        List<TableFields> result = new ArrayList<>(tables.size());
+        for(TableFields table : tables) {
+            TableKey key = new TableKey(userId, table.getDs(), table.getDb(), table.getTable());
+            Optional<Set<String>> fields = resolved.computeIfAbsent(key, k -> resolve(k, deadline));
+            TableFields answer = new TableFields(table.getDs(), table.getDb(), table.getTable(),
+                    fields.orElse(Collections.emptySet()));
+            answer.setError(!fields.isPresent());
+            result.add(answer);
+        }
+        return result;
+    }
+
+    /**
+     * @return Fields of table, or empty if lookup failed or batch ran out of time.
+     */
+    private Optional<Set<String>> resolve(TableKey key, long deadline) {
+        Set<String> cached = fieldsCache.getIfPresent(key);
+        if(!isNull(cached)) {
+            return Optional.of(cached);
+        }
+        if(System.nanoTime() - deadline > 0) {
+            LOGGER.warn("Batch timed out before fields of {}.{} in {} were retrieved", key.db, key.table, key.ds);
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(fieldsCache.get(key, () -> metaDataService.getTableFields(key.ds, key.db, key.table)));
+        } catch(ExecutionException | RuntimeException e) {
+            LOGGER.warn("Unable to retrieve fields of {}.{} in {}", key.db, key.table, key.ds, e);
+            return Optional.empty();
+        }
+    }
+
+    private static String requireName(String name, String field) {
+        if(isNull(name) || name.isBlank()) {
+            throw new ResponseStatusException(BAD_REQUEST, field + " must not be blank");
+        }
+        return name;
+    }
+
+    private Cache<TableKey, Set<String>> createCache() {
+        return CacheBuilder.newBuilder()
+                .expireAfterWrite(CACHE_MINUTES.get(), MINUTES)
+                .maximumSize(CACHE_SIZE.get())
+                .build();
+    }
+
+    private void addCallbacks() {
+        Runnable rebuild = () -> {
+            LOGGER.info("Table fields cache settings changed! rebuilding cache");
+            fieldsCache = createCache();
+        };
+        CACHE_MINUTES.addCallback(rebuild);
+        CACHE_SIZE.addCallback(rebuild);
+    }
+
+    /**
+     * Cache key, scoped to user since visible tables depend on user permissions.
+     */
+    private static class TableKey {
+        final String userId;
+        final String ds;
+        final String db;
+        final String table;
+
+        TableKey(String userId, String ds, String db, String table) {
+            this.userId = userId;
+            this.ds = ds;
+            this.db = db;
+            this.table = table;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) {
+                return true;
+            }
+            if(!(o instanceof TableKey)) {
+                return false;
+            }
+            TableKey other = (TableKey) o;
+            return Objects.equals(userId, other.userId) && Objects.equals(ds, other.ds)
+                    && Objects.equals(db, other.db) && Objects.equals(table, other.table);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, ds, db, table);
+        }
+    }
+}
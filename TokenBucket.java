@@ -0,0 +1,47 @@
+package com.dbs.celerity.queryrunner.ratelimit;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Token bucket refilled continuously. Rate and capacity are passed on each call,
+ * so changes to the backing properties apply to existing buckets right away.
+ */
+class TokenBucket {
+    private static final long NANOS_PER_MINUTE = MINUTES.toNanos(1);
+
+    private double tokens = -1;
+    private long lastRefill;
+
+    /**
+     * Takes one token if available.
+     *
+     * @param perMinute tokens added per minute, zero or less means unlimited.
+     * @param capacity  maximum tokens held, i.e. allowed burst.
+     * @return 0 if token was taken, otherwise nanoseconds until next token is available.
+     */
+    long tryAcquire(int perMinute, int capacity) {
+        return tryAcquire(perMinute, capacity, System.nanoTime());
+    }
+
+    /**
+     * @param now current {@link System#nanoTime()}.
+     */
+    synchronized long tryAcquire(int perMinute, int capacity, long now) {
+        if(perMinute <= 0) {
+            return 0;
+        }
+        int max = Math.max(capacity, 1);
+        if(tokens < 0) {
+            tokens = max;
+        } else {
+            tokens = Math.min(max, tokens + (now - lastRefill) * (double) perMinute / NANOS_PER_MINUTE);
+        }
+        lastRefill = now;
+
+        if(tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * NANOS_PER_MINUTE / perMinute);
+    }
+}
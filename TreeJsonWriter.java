@@ -0,0 +1,42 @@
+package com.dbs.celerity.queryrunner.api.filequery;
+
+import com.dbs.celerity.queryrunner.api.JsonStreamWriter;
+import com.dbs.celerity.queryrunner.pojo.Tree;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes Tree nodes one at a time.
+ * Produces the same document Jackson data-binding would for a {@code List<Tree>}.
+ */
+public class TreeJsonWriter extends JsonStreamWriter<Tree> {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString PID = new SerializedString("pId");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString URL = new SerializedString("url");
+
+    /**
+     * @param out    stream to write to, left open on close.
+     * @param ndjson true to write one node per line, false to write a single JSON array.
+     */
+    public TreeJsonWriter(OutputStream out, boolean ndjson) throws IOException {
+        super(out, ndjson);
+    }
+
+    @Override
+    protected void writeValue(Tree node) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(ID);
+        generator.writeNumber(node.getId());
+        generator.writeFieldName(PID);
+        generator.writeNumber(node.getpId());
+        generator.writeFieldName(NAME);
+        generator.writeString(node.getName());
+        generator.writeFieldName(URL);
+        generator.writeString(node.getUrl());
+        generator.writeEndObject();
+    }
+}
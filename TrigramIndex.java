@@ -0,0 +1,660 @@
+package com.dbs.celerity.queryrunner.search;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory substring index over a tree of slash separated paths, case insensitive: names and queries are both
+ * lowercased with {@link Locale#ROOT}.
+ * <p>
+ * Every node holds one path segment and a link to its parent, so a path is stored and indexed once however
+ * deep it is. Each name is indexed as {@code "/" + name}, split into overlapping 3-character grams, each mapped
+ * to the sorted list of nodes containing it. A query looks up its own grams, intersects their lists starting
+ * with the shortest, and only checks the remaining candidates against their name. Queries of two characters
+ * only match at the start of a name, since their sole gram is {@code "/" + query}.
+ * <p>
+ * A query containing '/' matches nodes whose path ends with a match of it, the part after its last '/' being
+ * a prefix of the node's name. That part needs at least two characters.
+ * <p>
+ * Nodes can be added while the index is searched, and removed with their subtree. Removed nodes are skipped
+ * until {@link #compact()} drops them.
+ * <p>
+ * A search ranks at most {@code MAX_RANKED} candidates, prefix matches ahead of other ones, so common grams stay
+ * fast however large the index. Past that, total number of matches is estimated and flagged as approximate.
+ */
+public class TrigramIndex {
+    /**
+     * Parent of top level nodes. It has no name and never matches.
+     */
+    public static final int ROOT = 0;
+
+    static final int MAX_RANKED = 20_000;
+
+    private static final int MIN_QUERY_LENGTH = 2;
+    private static final int NONE = -1;
+    private static final int RANK = 1_000_000;
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[] parents = new int[1024];
+    private String[] names = new String[1024];
+    private boolean[] files = new boolean[1024];
+    private boolean[] removed = new boolean[1024];
+    private short[] depths = new short[1024];
+    private int[] pathLengths = new int[1024];
+    private int[] firstChildren = new int[1024];
+    private int[] nextSiblings = new int[1024];
+    // open addressing table of node id + 1 by parent and name, 0 for free slots
+    private int[] childSlots = new int[2048];
+    private int nodes;
+    private int removedNodes;
+    private long nameChars;
+
+    public TrigramIndex() {
+        parents[ROOT] = NONE;
+        firstChildren[ROOT] = NONE;
+        nextSiblings[ROOT] = NONE;
+        nodes = 1;
+    }
+
+    /**
+     * Adds node under parent.
+     *
+     * @param parent node to add to, {@link #ROOT} for top level.
+     * @param name   name of node, without '/'.
+     * @param isFile true for leaf entries such as files and objects.
+     * @return ID of new node, valid until next {@link #compact()}.
+     */
+    public int add(int parent, String name, boolean isFile) {
+        lock.writeLock().lock();
+        try {
+            return addNode(parent, name, isFile);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds child of parent with given name, replacing it if it changed between leaf and not, or adding it if missing.
+     * Lets a fresh listing update index in place.
+     *
+     * @return ID of child, valid until next {@link #compact()}.
+     */
+    public int sync(int parent, String name, boolean isFile) {
+        lock.writeLock().lock();
+        try {
+            int child = child(parent, name);
+            if(child != NONE && files[child] != isFile) {
+                remove(child);
+                child = NONE;
+            }
+            return child != NONE ? child : addNode(parent, name, isFile);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return ID of child of parent with given name, or -1 if there is none.
+     */
+    public int child(int parent, String name) {
+        lock.readLock().lock();
+        try {
+            int mask = childSlots.length - 1;
+            for(int slot = childSlot(parent, name); childSlots[slot] != 0; slot = (slot + 1) & mask) {
+                int node = childSlots[slot] - 1;
+                if(!removed[node] && parents[node] == parent && names[node].equals(name)) {
+                    return node;
+                }
+            }
+            return NONE;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return IDs of children of parent.
+     */
+    public int[] children(int parent) {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            int[] children = new int[8];
+            for(int node = firstChildren[parent]; node != NONE; node = nextSiblings[node]) {
+                if(!removed[node]) {
+                    if(count == children.length) {
+                        children = Arrays.copyOf(children, count * 2);
+                    }
+                    children[count++] = node;
+                }
+            }
+            return Arrays.copyOf(children, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String name(int node) {
+        lock.readLock().lock();
+        try {
+            return names[node];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isFile(int node) {
+        lock.readLock().lock();
+        try {
+            return files[node];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes node along with everything below it.
+     */
+    public void remove(int node) {
+        lock.writeLock().lock();
+        try {
+            Deque<Integer> pending = new ArrayDeque<>();
+            pending.push(node);
+            while(!pending.isEmpty()) {
+                int current = pending.pop();
+                if(removed[current]) {
+                    continue;
+                }
+                removed[current] = true;
+                removedNodes++;
+                nameChars -= names[current].length();
+                for(int child = firstChildren[current]; child != NONE; child = nextSiblings[child]) {
+                    pending.push(child);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops removed nodes and releases spare capacity, once a bulk build or update is done.
+     * Node IDs change when nodes were removed.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            if(removedNodes == 0) {
+                trim();
+                return;
+            }
+            TrigramIndex live = new TrigramIndex();
+            int[] ids = new int[nodes];
+            for(int node = 1; node < nodes; node++) {
+                // parents come first, a node is only kept when its parent was
+                if(!removed[node] && (parents[node] == ROOT || ids[parents[node]] != 0)) {
+                    ids[node] = live.addNode(ids[parents[node]], names[node], files[node]);
+                }
+            }
+            live.trim();
+            postings.clear();
+            postings.putAll(live.postings);
+            parents = live.parents;
+            names = live.names;
+            files = live.files;
+            removed = live.removed;
+            depths = live.depths;
+            pathLengths = live.pathLengths;
+            firstChildren = live.firstChildren;
+            nextSiblings = live.nextSiblings;
+            childSlots = live.childSlots;
+            nodes = live.nodes;
+            removedNodes = 0;
+            nameChars = live.nameChars;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds nodes matching query, best ranked first: exact name, then name prefix, then name substring;
+     * shallower and shorter paths first within each.
+     *
+     * @param query text to look for, at least 2 characters.
+     * @param limit maximum number of matches to return.
+     * @return Best matches, along with number of nodes matched in total.
+     */
+    public Result search(String query, int limit) {
+        return search(query, limit, MAX_RANKED);
+    }
+
+    /**
+     * @param maxRanked most candidates to rank per pass, at least limit.
+     */
+    Result search(String query, int limit, int maxRanked) {
+        String needle = fold(query);
+        while(needle.length() > 1 && needle.endsWith("/")) {
+            needle = needle.substring(0, needle.length() - 1);
+        }
+        int slash = needle.lastIndexOf('/');
+        String name = needle.substring(slash + 1);
+        if(name.length() < MIN_QUERY_LENGTH || limit <= 0) {
+            return new Result(Collections.emptyList(), 0, false);
+        }
+        // after a '/', name has to start the node's name, like two character queries
+        boolean substring = slash < 0 && name.length() >= 3;
+
+        lock.readLock().lock();
+        try {
+            Ranking ranking = new Ranking(needle, name, slash >= 0, limit, Math.max(maxRanked, limit));
+            if(substring) {
+                // prefix matches hold the gram of '/' and their first two characters, so they can be ranked first
+                ranking.rank("/" + name, 2, 3);
+                ranking.rank(name, 1, 1);
+            } else {
+                ranking.rank("/" + name, 1, 3);
+            }
+
+            List<Candidate> ranked = new ArrayList<>(ranking.best);
+            Collections.sort(ranked);
+            List<Match> matches = new ArrayList<>(ranked.size());
+            for(Candidate candidate : ranked) {
+                matches.add(new Match(path(candidate.node), names[candidate.node], files[candidate.node], candidate.score));
+            }
+            return new Result(matches, (int) Math.min(ranking.total, Integer.MAX_VALUE), ranking.approximate);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of nodes, removed ones excluded.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes - 1 - removedNodes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Estimates heap used by index, names included, assuming compressed references and Latin-1 strings.
+     *
+     * @return Approximate size of index, in bytes.
+     */
+    public long estimateBytes() {
+        lock.readLock().lock();
+        try {
+            // per node: parent, sibling, child, path length, name reference, flags and depth
+            long bytes = 16L * 9 + 24L * parents.length + 4L * childSlots.length;
+            bytes += 40L * (nodes - removedNodes) + nameChars;
+            // HashMap node, boxed key and Postings object per gram, plus table slot
+            bytes += postings.size() * (32L + 24L + 24L + 8L);
+            for(Postings list : postings.values()) {
+                bytes += 16L + 4L * list.ids.length;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int addNode(int parent, String name, boolean isFile) {
+        if(nodes == parents.length) {
+            int capacity = nodes + (nodes >> 1);
+            parents = Arrays.copyOf(parents, capacity);
+            names = Arrays.copyOf(names, capacity);
+            files = Arrays.copyOf(files, capacity);
+            removed = Arrays.copyOf(removed, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            pathLengths = Arrays.copyOf(pathLengths, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        }
+        int node = nodes++;
+        parents[node] = parent;
+        names[node] = name;
+        files[node] = isFile;
+        depths[node] = (short) Math.min(depths[parent] + 1, Short.MAX_VALUE);
+        pathLengths[node] = pathLengths[parent] + 1 + name.length();
+        firstChildren[node] = NONE;
+        nextSiblings[node] = firstChildren[parent];
+        firstChildren[parent] = node;
+        nameChars += name.length();
+
+        if(2 * nodes > childSlots.length) {
+            resizeChildSlots();
+        } else {
+            putChildSlot(node);
+        }
+
+        String text = fold("/" + name);
+        for(int i = 0; i + 3 <= text.length(); i++) {
+            Postings list = postings.computeIfAbsent(gram(text, i), k -> new Postings());
+            // a gram repeated within one name only needs one posting
+            if(list.last() != node) {
+                list.add(node);
+            }
+        }
+        return node;
+    }
+
+    private void trim() {
+        int capacity = Math.max(nodes, 1);
+        parents = Arrays.copyOf(parents, capacity);
+        names = Arrays.copyOf(names, capacity);
+        files = Arrays.copyOf(files, capacity);
+        removed = Arrays.copyOf(removed, capacity);
+        depths = Arrays.copyOf(depths, capacity);
+        pathLengths = Arrays.copyOf(pathLengths, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        for(Postings list : postings.values()) {
+            list.trim();
+        }
+    }
+
+    private void resizeChildSlots() {
+        childSlots = new int[Integer.highestOneBit(4 * nodes - 1) << 1];
+        for(int node = 1; node < nodes; node++) {
+            if(!removed[node]) {
+                putChildSlot(node);
+            }
+        }
+    }
+
+    private void putChildSlot(int node) {
+        int mask = childSlots.length - 1;
+        int slot = childSlot(parents[node], names[node]);
+        while(childSlots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        childSlots[slot] = node + 1;
+    }
+
+    private int childSlot(int parent, String name) {
+        int hash = 31 * parent + name.hashCode();
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9 >>> 1 & (childSlots.length - 1);
+    }
+
+    /**
+     * @return Path of node, segments separated by '/'.
+     */
+    private String path(int node) {
+        char[] path = new char[pathLengths[node] - 1];
+        int end = path.length;
+        for(int current = node; current != ROOT; current = parents[current]) {
+            String name = names[current];
+            end -= name.length();
+            name.getChars(0, name.length(), path, end);
+            if(end > 0) {
+                path[--end] = '/';
+            }
+        }
+        return new String(path);
+    }
+
+    /**
+     * @return Rank of match, higher is better, or -1 if node does not match.
+     */
+    private int score(int node, String needle, String name, boolean hasPath) {
+        String nodeName = fold(names[node]);
+        int rank;
+        if(nodeName.equals(name)) {
+            rank = 3;
+        } else if(nodeName.startsWith(name)) {
+            rank = 2;
+        } else if(!hasPath && (name.length() <= 3 || nodeName.contains(name))) {
+            // a single gram name is already known to be contained
+            rank = 1;
+        } else {
+            return -1;
+        }
+        if(hasPath && !pathEndsWith(node, needle.substring(0, needle.lastIndexOf('/')))) {
+            return -1;
+        }
+
+        int depth = depths[node] - 1;
+        return rank * RANK + (99 - Math.min(depth, 99)) * 10_000 + (9_999 - Math.min(pathLengths[node] - 1, 9_999));
+    }
+
+    /**
+     * @return True if path of parent of node, with a leading '/', ends with given text.
+     */
+    private boolean pathEndsWith(int node, String text) {
+        int end = text.length();
+        for(int current = parents[node]; end > 0; current = parents[current]) {
+            if(current == ROOT) {
+                return false;
+            }
+            String segment = fold(names[current]);
+            int start = Math.max(end - segment.length(), 0);
+            if(!segment.regionMatches(segment.length() - (end - start), text, start, end - start)) {
+                return false;
+            }
+            if(start == 0) {
+                return true;
+            }
+            end = start - 1;
+            if(text.charAt(end) != '/') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String fold(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param text lowercased text.
+     */
+    private static long gram(String text, int i) {
+        return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+    }
+
+    /**
+     * Best matches of a search, collected over one or more passes over candidates.
+     */
+    private class Ranking {
+        final String needle;
+        final String name;
+        final boolean hasPath;
+        final int limit;
+        final int maxRanked;
+        final PriorityQueue<Candidate> best;
+        long total;
+        boolean approximate;
+
+        Ranking(String needle, String name, boolean hasPath, int limit, int maxRanked) {
+            this.needle = needle;
+            this.name = name;
+            this.hasPath = hasPath;
+            this.limit = limit;
+            this.maxRanked = maxRanked;
+            this.best = new PriorityQueue<>(limit + 1, Comparator.<Candidate>naturalOrder().reversed());
+        }
+
+        /**
+         * Ranks nodes holding every gram of pattern, keeping matches ranked from minRank to maxRank, so no two passes
+         * keep the same match. Once maxRanked candidates are ranked, matches among the rest are estimated.
+         */
+        void rank(String pattern, int minRank, int maxRank) {
+            List<Postings> lists = new ArrayList<>();
+            for(int i = 0; i + 3 <= pattern.length(); i++) {
+                Postings list = postings.get(gram(pattern, i));
+                if(list == null) {
+                    return;
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(list -> list.size));
+
+            Postings smallest = lists.get(0);
+            int[] cursors = new int[lists.size()];
+            int ranked = 0;
+            int matched = 0;
+            int position = 0;
+            candidates:
+            for(; position < smallest.size && ranked < maxRanked; position++) {
+                int node = smallest.ids[position];
+                for(int l = 1; l < lists.size(); l++) {
+                    Postings list = lists.get(l);
+                    cursors[l] = list.seek(node, cursors[l]);
+                    if(cursors[l] == list.size) {
+                        position = smallest.size;
+                        break candidates;
+                    }
+                    if(list.ids[cursors[l]] != node) {
+                        continue candidates;
+                    }
+                }
+                if(removed[node]) {
+                    continue;
+                }
+
+                int score = score(node, needle, name, hasPath);
+                ranked++;
+                if(score < 0 || score / RANK < minRank || score / RANK > maxRank) {
+                    continue;
+                }
+                matched++;
+                if(best.size() < limit || score >= best.peek().score) {
+                    best.add(new Candidate(node, score));
+                    if(best.size() > limit) {
+                        best.poll();
+                    }
+                }
+            }
+            if(position < smallest.size) {
+                // share of candidates matched so far, applied to all of them
+                total += (long) matched * smallest.size / position;
+                approximate = true;
+            } else {
+                total += matched;
+            }
+        }
+    }
+
+    /**
+     * Sorted, growable list of node ids.
+     */
+    private static class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if(size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            ids[size++] = id;
+        }
+
+        int last() {
+            return size == 0 ? -1 : ids[size - 1];
+        }
+
+        void trim() {
+            ids = Arrays.copyOf(ids, size);
+        }
+
+        /**
+         * @return Position of first id not smaller than given id, searching from position from.
+         */
+        int seek(int id, int from) {
+            int step = 1;
+            int hi = from;
+            while(hi < size && ids[hi] < id) {
+                from = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            int index = Arrays.binarySearch(ids, from, Math.min(hi + 1, size), id);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+        final int node;
+        final int score;
+
+        Candidate(int node, int score) {
+            this.node = node;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int byScore = Integer.compare(other.score, score);
+            return byScore != 0 ? byScore : Integer.compare(node, other.node);
+        }
+    }
+
+    /**
+     * Matching node.
+     */
+    public static class Match {
+        private final String path;
+        private final String name;
+        private final boolean isFile;
+        private final int score;
+
+        Match(String path, String name, boolean isFile, int score) {
+            this.path = path;
+            this.name = name;
+            this.isFile = isFile;
+            this.score = score;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isFile() {
+            return isFile;
+        }
+
+        public int getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Best matches of a search, along with count of all matches.
+     */
+    public static class Result {
+        private final List<Match> matches;
+        private final int total;
+        private final boolean approximate;
+
+        Result(List<Match> matches, int total, boolean approximate) {
+            this.matches = matches;
+            this.total = total;
+            this.approximate = approximate;
+        }
+
+        public List<Match> getMatches() {
+            return matches;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * @return true if total is estimated, as not every candidate was ranked.
+         */
+        public boolean isApproximate() {
+            return approximate;
+        }
+    }
+}
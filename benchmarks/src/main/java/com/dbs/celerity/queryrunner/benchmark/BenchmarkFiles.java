@@ -0,0 +1,46 @@
+package com.dbs.celerity.queryrunner.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Generates and removes the synthetic directories used by benchmarks.
+ */
+public final class BenchmarkFiles {
+
+    private BenchmarkFiles() {
+    }
+
+    /**
+     * Creates a directory tree where every directory holds {@code fanout} sub-directories
+     * and {@code fanout} empty files, down to {@code depth} levels.
+     *
+     * @return root of generated tree.
+     */
+    public static Path createTree(int depth, int fanout) throws IOException {
+        Path root = Files.createTempDirectory("bench-tree");
+        populate(root, depth, fanout);
+        return root;
+    }
+
+    public static void delete(Path root) throws IOException {
+        try(Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static void populate(Path dir, int depth, int fanout) throws IOException {
+        for(int i = 0; i < fanout; i++) {
+            Files.createFile(dir.resolve("file" + i + ".csv"));
+        }
+        if(depth > 1) {
+            for(int i = 0; i < fanout; i++) {
+                Path child = Files.createDirectory(dir.resolve("dir" + i));
+                populate(child, depth - 1, fanout);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.dbs.celerity.queryrunner.benchmark;
+
+import com.dbs.celerity.queryrunner.api.filequery.FileQueryController;
+import com.dbs.celerity.queryrunner.api.filequery.FileSearchService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code file/download} as the application serves it, file name logging included.
+ * Response body goes to a discarding servlet stream, so only the controller's own work is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DownloadBenchmark {
+
+    @Param({"1048576", "16777216"})
+    private int fileSize;
+
+    private Path file;
+    private FileQueryController controller;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] content = new byte[fileSize];
+        new Random(42).nextBytes(content);
+        file = Files.createTempFile("bench-download", ".bin");
+        Files.write(file, content);
+        controller = new FileQueryController(new FileSearchService());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long download() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file/download");
+        request.addHeader("USER-AGENT", "Mozilla/5.0");
+        DiscardingResponse response = new DiscardingResponse();
+        controller.download(request, response, file.toString());
+        return response.sink.count;
+    }
+
+    /**
+     * Response handing out a discarding stream instead of buffering the body.
+     */
+    private static class DiscardingResponse extends MockHttpServletResponse {
+        private final CountingSink sink = new CountingSink();
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return sink;
+        }
+    }
+
+    /**
+     * Servlet stream counting and dropping everything written to it.
+     */
+    private static class CountingSink extends ServletOutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.dbs.celerity.queryrunner.benchmark;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In-process S3 stand-in serving a fixed, sorted key list in pages, like a real bucket listing.
+ */
+public class FakeS3 extends AbstractAmazonS3 {
+
+    private final String bucket;
+    private final List<String> keys;
+    private final int pageSize;
+
+    public FakeS3(String bucket, List<String> keys, int pageSize) {
+        this.bucket = bucket;
+        this.keys = new ArrayList<>(keys);
+        this.pageSize = pageSize;
+        Collections.sort(this.keys);
+    }
+
+    /**
+     * Generates keys shaped like {@code dirA/dirB/fileC.csv}, spread over {@code dirs} directories per level.
+     */
+    public static List<String> generateKeys(int count, int dirs) {
+        List<String> keys = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            keys.add("dir" + (i % dirs) + "/sub" + ((i / dirs) % dirs) + "/file" + i + ".csv");
+        }
+        return keys;
+    }
+
+    @Override
+    public ObjectListing listObjects(String bucketName) {
+        return page(bucketName, 0);
+    }
+
+    @Override
+    public ObjectListing listNextBatchOfObjects(ObjectListing previousObjectListing) {
+        return page(previousObjectListing.getBucketName(), Integer.parseInt(previousObjectListing.getNextMarker()));
+    }
+
+    private ObjectListing page(String bucketName, int from) {
+        if(!bucket.equals(bucketName)) {
+            throw new IllegalArgumentException("Unknown bucket: " + bucketName);
+        }
+        int to = Math.min(from + pageSize, keys.size());
+
+        ObjectListing listing = new ObjectListing();
+        listing.setBucketName(bucketName);
+        for(int i = from; i < to; i++) {
+            S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setBucketName(bucketName);
+            summary.setKey(keys.get(i));
+            listing.getObjectSummaries().add(summary);
+        }
+        listing.setTruncated(to < keys.size());
+        listing.setNextMarker(String.valueOf(to));
+        return listing;
+    }
+}
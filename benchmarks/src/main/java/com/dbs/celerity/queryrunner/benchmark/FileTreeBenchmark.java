@@ -0,0 +1,74 @@
+package com.dbs.celerity.queryrunner.benchmark;
+
+import com.dbs.celerity.queryrunner.api.filequery.FileTreeScanner;
+import com.dbs.celerity.queryrunner.api.filequery.TreeJsonWriter;
+import com.dbs.celerity.queryrunner.pojo.Tree;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures directory scanning behind {@code /file} and serialization of the resulting nodes,
+ * both through data-binding of a collected list and streamed straight from the scanner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileTreeBenchmark {
+
+    @Param({"3", "5"})
+    private int depth;
+
+    @Param({"8"})
+    private int fanout;
+
+    private Path root;
+    private List<Tree> nodes;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = BenchmarkFiles.createTree(depth, fanout);
+        nodes = FileTreeScanner.scan(root.toString());
+        objectMapper = new ObjectMapper();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(root);
+    }
+
+    @Benchmark
+    public List<Tree> scan() throws IOException {
+        return FileTreeScanner.scan(root.toString());
+    }
+
+    @Benchmark
+    public void serialize() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), nodes);
+    }
+
+    @Benchmark
+    public int scanAndStream() throws IOException {
+        try(TreeJsonWriter writer = new TreeJsonWriter(OutputStream.nullOutputStream(), false)) {
+            FileTreeScanner.scan(root.toString(), writer::write);
+            return writer.getCount();
+        }
+    }
+
+    @Benchmark
+    public int scanAndStreamNdjson() throws IOException {
+        try(TreeJsonWriter writer = new TreeJsonWriter(OutputStream.nullOutputStream(), true)) {
+            FileTreeScanner.scan(root.toString(), writer::write);
+            return writer.getCount();
+        }
+    }
+}
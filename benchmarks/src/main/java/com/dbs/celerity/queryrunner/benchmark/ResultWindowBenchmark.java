@@ -0,0 +1,76 @@
+package com.dbs.celerity.queryrunner.benchmark;
+
+import com.dbs.celerity.queryrunner.model.ResultWindow;
+import com.dbs.celerity.queryrunner.service.query.ResultRowIndex;
+import com.dbs.celerity.queryrunner.service.query.RowIndexingOutputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Measures reading a window of rows near the end of a result file, through the row index
+ * and by skipping lines from the start of the file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultWindowBenchmark {
+
+    @Param({"1000000"})
+    private int rowCount;
+
+    @Param({"100"})
+    private int limit;
+
+    private Path file;
+    private long offset;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("bench-result", ".csv");
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(
+                RowIndexingOutputStream.spill(file), UTF_8))) {
+            writer.write("id,name,amount\n");
+            for(int i = 0; i < rowCount; i++) {
+                writer.write(i + ",name" + i + "," + (i * 31 % 1000) + "\n");
+            }
+        }
+        offset = rowCount - limit;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(ResultRowIndex.indexPath(file));
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public ResultWindow indexedWindow() throws IOException {
+        return ResultRowIndex.readWindow(file, offset, limit);
+    }
+
+    @Benchmark
+    public List<String> skipLines() throws IOException {
+        List<String> rows = new ArrayList<>(limit);
+        try(BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+            for(long i = 0; i < offset; i++) {
+                reader.readLine();
+            }
+            String line;
+            while(rows.size() < limit && (line = reader.readLine()) != null) {
+                rows.add(line);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,41 @@
+package com.dbs.celerity.queryrunner.benchmark;
+
+import com.dbs.celerity.queryrunner.Application;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time until application is ready, with eager and lazy initialization.
+ * Every fork boots a fresh JVM, so class loading is part of the measurement.
+ * Needs the same configuration and reachable datasources as a normal start.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(5)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Param({"false", "true"})
+    private String lazy;
+
+    private ConfigurableApplicationContext context;
+
+    @Benchmark
+    public ConfigurableApplicationContext start() {
+        context = SpringApplication.run(Application.class,
+                "--spring.main.lazy-initialization=" + lazy, "--server.port=0");
+        return context;
+    }
+
+    @TearDown(Level.Iteration)
+    public void stop() {
+        if(context != null) {
+            context.close();
+        }
+    }
+}
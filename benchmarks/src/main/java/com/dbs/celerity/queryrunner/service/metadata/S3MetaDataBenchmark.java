@@ -0,0 +1,73 @@
+package com.dbs.celerity.queryrunner.service.metadata;
+
+import com.dbs.celerity.queryrunner.api.s3query.S3MetaDataJsonWriter;
+import com.dbs.celerity.queryrunner.benchmark.FakeS3;
+import com.dbs.celerity.queryrunner.model.S3MetaData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures S3 bucket indexing and metadata serialization. Lives in the service package to
+ * reach the package-private tree building of {@link S3MetaDataService}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class S3MetaDataBenchmark {
+
+    private static final String BUCKET = "bench-bucket";
+
+    @Param({"10000", "100000"})
+    private int keyCount;
+
+    @Param({"50"})
+    private int dirs;
+
+    private List<String> keys;
+    private FakeS3 s3;
+    private S3MetaData metadata;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = FakeS3.generateKeys(keyCount, dirs);
+        s3 = new FakeS3(BUCKET, keys, 1000);
+        metadata = S3MetaDataService.getBucketMetadata(s3, BUCKET);
+        objectMapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public S3MetaData buildTree() {
+        S3MetaData bucketMetadata = new S3MetaData(BUCKET);
+        for(String key : keys) {
+            S3MetaDataService.buildTree(key, bucketMetadata);
+        }
+        return bucketMetadata;
+    }
+
+    @Benchmark
+    public S3MetaData listBucket() {
+        return S3MetaDataService.getBucketMetadata(s3, BUCKET);
+    }
+
+    @Benchmark
+    public void serialize() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), metadata);
+    }
+
+    @Benchmark
+    public int stream() throws IOException {
+        try(S3MetaDataJsonWriter writer = new S3MetaDataJsonWriter(OutputStream.nullOutputStream(), false, objectMapper)) {
+            writer.write(metadata);
+            return writer.getCount();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.dbs.celerity.queryrunner.api.filequery;
+
+import com.dbs.celerity.queryrunner.model.SearchHit;
+import com.dbs.celerity.queryrunner.model.SearchResult;
+import com.dbs.celerity.queryrunner.pojo.Tree;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FileSearchServiceTest {
+    @TempDir
+    Path dir;
+
+    private FileSearchService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(dir.resolve("reports/2020"));
+        Files.write(dir.resolve("reports/2020/sales.csv"), new byte[]{1});
+        Files.write(dir.resolve("reports/summary.csv"), new byte[]{1});
+        service = new FileSearchService(dir.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void returnsHitsWithSameDownloadUrlAsFileTree() throws Exception {
+        service.refresh().get();
+
+        SearchResult result = service.search("sales", 10);
+        assertFalse(result.isIndexing());
+        assertEquals(1, result.getHits().size());
+        SearchHit hit = result.getHits().get(0);
+        assertEquals("reports/2020/sales.csv", hit.getPath());
+        assertTrue(hit.getIsFile());
+
+        String treeUrl = FileTreeScanner.scan(dir.toString()).stream()
+                .filter(node -> "sales.csv".equals(node.getName())).map(Tree::getUrl).findFirst().orElse(null);
+        assertEquals(treeUrl, hit.getUrl());
+        assertNull(service.search("2020", 10).getHits().get(0).getUrl());
+    }
+
+    @Test
+    void addsAndRemovesChangedEntriesOnSync() throws Exception {
+        service.refresh().get();
+        assertEquals(4, service.search("re", 10).getIndexEntries());
+
+        Files.delete(dir.resolve("reports/2020/sales.csv"));
+        Files.delete(dir.resolve("reports/2020"));
+        Files.createDirectories(dir.resolve("reports/2021"));
+        Files.write(dir.resolve("reports/2021/sales.csv"), new byte[]{1});
+        // a file replaced by a directory of the same name
+        Files.delete(dir.resolve("reports/summary.csv"));
+        Files.createDirectories(dir.resolve("reports/summary.csv"));
+        service.refresh().get();
+
+        assertEquals(List.of("reports/2021/sales.csv"), paths(service.search("sales", 10)));
+        assertTrue(service.search("2020", 10).getHits().isEmpty());
+        assertFalse(service.search("summary", 10).getHits().get(0).getIsFile());
+        assertEquals(4, service.search("re", 10).getIndexEntries());
+    }
+
+    @Test
+    void indexesDirectoryWhileFileTreeIsScanned() throws Exception {
+        // no search yet, so no background sync competes with scan
+        List<String> names = new ArrayList<>();
+        service.scan(node -> names.add(node.getName()));
+
+        assertEquals(FileTreeScanner.scan(dir.toString()).stream().map(Tree::getName).collect(Collectors.toList()), names);
+        SearchResult result = service.search("sales", 10);
+        assertFalse(result.isIndexing());
+        assertEquals(List.of("reports/2020/sales.csv"), paths(result));
+    }
+
+    @Test
+    void skipsLinksBackToParentDirectory() throws Exception {
+        try {
+            Files.createSymbolicLink(dir.resolve("reports/2020/loop"), dir.resolve("reports"));
+        } catch(UnsupportedOperationException | IOException e) {
+            assumeTrue(false, "symbolic links not supported");
+        }
+        service.refresh().get();
+
+        assertEquals(List.of("reports/2020/loop"), paths(service.search("loop", 10)));
+        assertEquals(List.of("reports/2020/sales.csv"), paths(service.search("sales", 10)));
+        assertEquals(5, service.search("re", 10).getIndexEntries());
+    }
+
+    private static List<String> paths(SearchResult result) {
+        return result.getHits().stream().map(SearchHit::getPath).collect(Collectors.toList());
+    }
+}
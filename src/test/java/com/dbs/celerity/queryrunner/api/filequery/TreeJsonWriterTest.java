@@ -0,0 +1,69 @@
+package com.dbs.celerity.queryrunner.api.filequery;
+
+import com.dbs.celerity.queryrunner.pojo.Tree;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeJsonWriterTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void writesSameArrayAsDataBinding() throws IOException {
+        List<Tree> nodes = List.of(node(1, 0, "reports", null), node(11, 1, "sales.csv", "/file/download?filePath=%2Fsales.csv"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(TreeJsonWriter writer = new TreeJsonWriter(out, false)) {
+            for(Tree node : nodes) {
+                writer.write(node);
+            }
+            assertEquals(2, writer.getCount());
+        }
+        assertEquals(mapper.writeValueAsString(nodes), out.toString(UTF_8));
+    }
+
+    @Test
+    void writesOneNodePerLine() throws IOException {
+        Tree first = node(1, 0, "reports", null);
+        Tree second = node(11, 1, "sales.csv", "/file/download?filePath=%2Fsales.csv");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(TreeJsonWriter writer = new TreeJsonWriter(out, true)) {
+            writer.write(first);
+            writer.write(second);
+        }
+        assertEquals(mapper.writeValueAsString(first) + "\n" + mapper.writeValueAsString(second) + "\n", out.toString(UTF_8));
+    }
+
+    @Test
+    void leavesFailedDocumentIncomplete() throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try(TreeJsonWriter writer = new TreeJsonWriter(json, false)) {
+            writer.write(node(1, 0, "reports", null));
+            writer.fail(new IOException("disk gone"));
+        }
+        assertFalse(json.toString(UTF_8).endsWith("]"));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        try(TreeJsonWriter writer = new TreeJsonWriter(ndjson, true)) {
+            writer.write(node(1, 0, "reports", null));
+            writer.fail(new IOException("disk gone"));
+        }
+        assertTrue(ndjson.toString(UTF_8).endsWith("{\"error\":\"disk gone\"}\n"));
+    }
+
+    private static Tree node(int id, int pId, String name, String url) {
+        Tree tree = new Tree();
+        tree.setId(id);
+        tree.setpId(pId);
+        tree.setName(name);
+        tree.setUrl(url);
+        return tree;
+    }
+}
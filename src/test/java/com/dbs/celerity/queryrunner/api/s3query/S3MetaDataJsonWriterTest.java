@@ -0,0 +1,53 @@
+package com.dbs.celerity.queryrunner.api.s3query;
+
+import com.dbs.celerity.queryrunner.model.S3MetaData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class S3MetaDataJsonWriterTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void writesSameArrayAsDataBinding() throws IOException {
+        List<S3MetaData> buckets = List.of(bucket("reports"), bucket("archive"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(S3MetaDataJsonWriter writer = new S3MetaDataJsonWriter(out, false, mapper)) {
+            for(S3MetaData bucket : buckets) {
+                writer.write(bucket);
+            }
+            assertEquals(2, writer.getCount());
+        }
+        assertEquals(mapper.writeValueAsString(buckets), out.toString(UTF_8));
+    }
+
+    @Test
+    void writesOneBucketTreePerLine() throws IOException {
+        S3MetaData reports = bucket("reports");
+        S3MetaData archive = bucket("archive");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(S3MetaDataJsonWriter writer = new S3MetaDataJsonWriter(out, true, mapper)) {
+            writer.write(reports);
+            writer.write(archive);
+        }
+        assertEquals(mapper.writeValueAsString(reports) + "\n" + mapper.writeValueAsString(archive) + "\n", out.toString(UTF_8));
+    }
+
+    private static S3MetaData bucket(String name) {
+        S3MetaData bucket = new S3MetaData(name);
+        S3MetaData folder = bucket.addChild(new S3MetaData("2020"));
+        S3MetaData file = folder.addChild(new S3MetaData("sales.csv"));
+        file.setIsFile(true);
+        file.setBucket(name);
+        file.setFilePath("2020/sales.csv");
+        return bucket;
+    }
+}
@@ -0,0 +1,53 @@
+package com.dbs.celerity.queryrunner.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+    private final TokenBucket bucket = new TokenBucket();
+
+    @Test
+    void allowsBurstThenAsksToWaitForNextToken() {
+        for(int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryAcquire(60, 3, 0));
+        }
+        // one token a second
+        assertEquals(SECONDS.toNanos(1), bucket.tryAcquire(60, 3, 0));
+        assertEquals(SECONDS.toNanos(1) / 2, bucket.tryAcquire(60, 3, SECONDS.toNanos(1) / 2));
+        assertEquals(0, bucket.tryAcquire(60, 3, SECONDS.toNanos(1)));
+    }
+
+    @Test
+    void refillsUpToCapacityOnly() {
+        for(int i = 0; i < 3; i++) {
+            bucket.tryAcquire(60, 3, 0);
+        }
+        long later = SECONDS.toNanos(3600);
+        for(int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryAcquire(60, 3, later));
+        }
+        assertTrue(bucket.tryAcquire(60, 3, later) > 0);
+    }
+
+    @Test
+    void appliesChangedLimitsToExistingBucket() {
+        assertEquals(0, bucket.tryAcquire(60, 1, 0));
+        assertTrue(bucket.tryAcquire(60, 1, 0) > 0);
+        // disabling rate lets everything through
+        assertEquals(0, bucket.tryAcquire(0, 1, 0));
+        // a lower capacity caps tokens already held
+        long later = SECONDS.toNanos(10);
+        assertEquals(0, bucket.tryAcquire(60, 5, later));
+        assertEquals(0, bucket.tryAcquire(60, 2, later));
+        assertEquals(0, bucket.tryAcquire(60, 2, later));
+        assertTrue(bucket.tryAcquire(60, 2, later) > 0);
+    }
+
+    @Test
+    void treatsZeroCapacityAsOne() {
+        assertEquals(0, bucket.tryAcquire(30, 0, 0));
+        assertEquals(SECONDS.toNanos(2), bucket.tryAcquire(30, 0, 0));
+    }
+}
@@ -0,0 +1,153 @@
+package com.dbs.celerity.queryrunner.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+    private TrigramIndex index;
+    private int main;
+    private int java;
+
+    @BeforeEach
+    void setUp() {
+        index = new TrigramIndex();
+        int src = index.add(TrigramIndex.ROOT, "src", false);
+        main = index.add(src, "main", false);
+        java = index.add(main, "java", false);
+        index.add(java, "Main.java", true);
+        index.add(java, "App.java", true);
+        int test = index.add(src, "test", false);
+        index.add(test, "MainTest.java", true);
+        index.add(TrigramIndex.ROOT, "README.md", true);
+    }
+
+    @Test
+    void matchesNodesByOwnNameOnly() {
+        // descendants of src/main/java do not match through their parents
+        assertEquals(List.of("src/main/java", "src/test/MainTest.java", "src/main/java/App.java",
+                "src/main/java/Main.java"), paths("java"));
+    }
+
+    @Test
+    void ranksExactNameThenPrefixThenSubstring() {
+        TrigramIndex.Result result = index.search("main", 10);
+        assertEquals(List.of("src/main", "src/test/MainTest.java", "src/main/java/Main.java"), paths(result));
+        assertEquals(3, result.getTotal());
+        assertFalse(result.isApproximate());
+        assertFalse(result.getMatches().get(0).isFile());
+        assertTrue(result.getMatches().get(1).isFile());
+    }
+
+    @Test
+    void matchesTwoCharacterQueriesAtNameStartOnly() {
+        assertEquals(List.of("README.md"), paths("re"));
+        assertEquals(List.of(), paths("ea"));
+        assertEquals(List.of(), paths("m"));
+    }
+
+    @Test
+    void matchesQueriesWithPathAgainstParents() {
+        assertEquals(List.of("src/main/java"), paths("main/jav"));
+        assertEquals(List.of("src/main/java/App.java"), paths("/src/main/java/app"));
+        assertEquals(List.of("src/main"), paths("rc/ma"));
+        assertEquals(List.of(), paths("/rc/ma"));
+        assertEquals(List.of(), paths("test/main/java"));
+        assertEquals(List.of("src/test", "src/test/MainTest.java"), paths("test/"));
+    }
+
+    @Test
+    void lowercasesNamesLikeQueries() {
+        // lowercases to two characters, unlike Character.toLowerCase
+        index.add(TrigramIndex.ROOT, "\u0130stanbul.csv", true);
+        assertEquals(List.of("\u0130stanbul.csv"), paths("\u0130stanbul"));
+        assertEquals(List.of("README.md"), paths("readme"));
+    }
+
+    @Test
+    void ranksPrefixMatchesPastRankingCap() {
+        int data = index.add(TrigramIndex.ROOT, "data", false);
+        for(int i = 0; i < 1000; i++) {
+            index.add(data, "sales-" + i + ".csv", true);
+        }
+        index.add(data, "csv", false);
+
+        TrigramIndex.Result result = index.search("csv", 5, 100);
+        assertEquals("data/csv", result.getMatches().get(0).getPath());
+        assertEquals(5, result.getMatches().size());
+        assertTrue(result.isApproximate());
+        assertTrue(result.getTotal() > 900 && result.getTotal() < 1100, "total " + result.getTotal());
+
+        TrigramIndex.Result exact = index.search("csv", 5);
+        assertFalse(exact.isApproximate());
+        assertEquals(1001, exact.getTotal());
+    }
+
+    @Test
+    void syncsChildrenInPlace() {
+        int readme = index.child(TrigramIndex.ROOT, "README.md");
+        assertEquals(readme, index.sync(TrigramIndex.ROOT, "README.md", true));
+        assertEquals(8, index.size());
+
+        // a file replaced by a directory of the same name
+        int replaced = index.sync(TrigramIndex.ROOT, "README.md", false);
+        assertNotEquals(readme, replaced);
+        assertFalse(index.isFile(replaced));
+        assertEquals(replaced, index.child(TrigramIndex.ROOT, "README.md"));
+
+        int added = index.sync(java, "Util.java", true);
+        assertEquals(List.of("src/main/java/Util.java"), paths("util"));
+        assertEquals(added, index.child(java, "Util.java"));
+    }
+
+    @Test
+    void findsChildrenByName() {
+        assertTrue(index.child(java, "Main.java") > 0);
+        assertEquals(-1, index.child(java, "main.java"));
+        assertEquals(-1, index.child(main, "Main.java"));
+        assertEquals(2, index.children(java).length);
+    }
+
+    @Test
+    void removesSubtreeAndCompacts() {
+        assertEquals(8, index.size());
+        index.remove(main);
+        assertEquals(List.of("src/test/MainTest.java"), paths("main"));
+        assertEquals(4, index.size());
+
+        index.compact();
+        int src = index.child(TrigramIndex.ROOT, "src");
+        assertEquals(-1, index.child(src, "main"));
+        assertEquals(List.of("src/test/MainTest.java"), paths("main"));
+        assertEquals(List.of("src/test", "src/test/MainTest.java"), paths("test"));
+
+        int readded = index.add(src, "main", false);
+        index.add(readded, "Main.java", true);
+        assertEquals(List.of("src/main", "src/main/Main.java", "src/test/MainTest.java"), paths("main"));
+    }
+
+    @Test
+    void keepsOneEntryPerNodeHoweverDeep() {
+        TrigramIndex deep = new TrigramIndex();
+        int parent = TrigramIndex.ROOT;
+        for(int i = 0; i < 50; i++) {
+            parent = deep.add(parent, "level" + i, false);
+        }
+        deep.add(parent, "leaf.txt", true);
+        assertEquals(51, deep.size());
+        assertEquals(1, deep.search("leaf", 10).getTotal());
+        assertEquals(1, deep.search("level1", 10).getMatches().stream().filter(m -> m.getName().equals("level1")).count());
+    }
+
+    private List<String> paths(String query) {
+        return paths(index.search(query, 10));
+    }
+
+    private static List<String> paths(TrigramIndex.Result result) {
+        return result.getMatches().stream().map(TrigramIndex.Match::getPath).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,196 @@
+package com.dbs.celerity.queryrunner.service.cluster;
+
+import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs coordinators of several nodes against an in-process ZooKeeper server.
+ */
+class ClusterCoordinatorTest {
+    private static final String ROOT = "/celerity-test";
+    private static final int SESSION_TIMEOUT_MS = 10000;
+    private static final long WAIT_MS = 15000;
+
+    private TestingServer server;
+    private final List<ClusterCoordinator> nodes = new ArrayList<>();
+    private final List<ZooKeeper> clients = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new TestingServer(true);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for(ClusterCoordinator node : nodes) {
+            node.close();
+        }
+        for(ZooKeeper client : clients) {
+            client.close();
+        }
+        server.close();
+    }
+
+    @Test
+    void findsOwnerOfQueryRunningOnAnotherNode() throws Exception {
+        ClusterCoordinator a = join("http://node-a:8080", null);
+        ClusterCoordinator b = join("http://node-b:8080", null);
+
+        a.registerQuery(ClusterCoordinator.QUERY, "1");
+        assertEquals(Optional.of("http://node-a:8080"), b.findRemoteOwner(ClusterCoordinator.QUERY, "1"));
+        assertEquals(Optional.empty(), a.findRemoteOwner(ClusterCoordinator.QUERY, "1"));
+        assertEquals(Optional.empty(), b.findRemoteOwner(ClusterCoordinator.S3_QUERY, "1"));
+
+        a.unregisterQuery(ClusterCoordinator.QUERY, "1");
+        assertEquals(Optional.empty(), b.findRemoteOwner(ClusterCoordinator.QUERY, "1"));
+    }
+
+    @Test
+    void registersOwnershipAgainAfterSessionExpiry() throws Exception {
+        ClusterCoordinator a = join("http://node-a:8080", null);
+        ClusterCoordinator b = join("http://node-b:8080", null);
+        a.registerQuery(ClusterCoordinator.S3_QUERY, "7");
+        long expiredSession = a.getZooKeeper().getSessionId();
+
+        expireSession(a);
+
+        await(() -> a.isClustered() && a.getZooKeeper().getSessionId() != expiredSession);
+        await(() -> b.findRemoteOwner(ClusterCoordinator.S3_QUERY, "7").equals(Optional.of("http://node-a:8080")));
+        await(() -> memberCount(b) == 2);
+    }
+
+    @Test
+    void electsNextNodeWhenLeaderLeaves() throws Exception {
+        ClusterCoordinator a = join("http://node-a:8080", null);
+        ClusterCoordinator b = join("http://node-b:8080", null);
+        assertTrue(a.isLeader());
+        assertFalse(b.isLeader());
+
+        a.close();
+        nodes.remove(a);
+
+        await(() -> b.isClustered() && b.isLeader());
+    }
+
+    @Test
+    void leadsOnlyWhileConnected() throws Exception {
+        ClusterCoordinator standalone = new ClusterCoordinator(null, "http://node-s:8080", SESSION_TIMEOUT_MS, ROOT, null);
+        nodes.add(standalone);
+        assertTrue(standalone.isLeader());
+
+        ClusterCoordinator a = join("http://node-a:8080", null);
+        assertTrue(a.isLeader());
+
+        server.stop();
+        await(() -> !a.isClustered());
+        assertFalse(a.isLeader());
+
+        server.restart();
+        await(() -> a.isClustered() && a.isLeader());
+    }
+
+    @Test
+    void runsPublishedRefreshOnEveryNode() throws Exception {
+        ClusterCoordinator a = join("http://node-a:8080", null);
+        ClusterCoordinator b = join("http://node-b:8080", null);
+        AtomicInteger refreshedA = new AtomicInteger();
+        AtomicInteger refreshedB = new AtomicInteger();
+        a.onRefresh(refreshedA::incrementAndGet);
+        b.onRefresh(refreshedB::incrementAndGet);
+
+        a.publishRefresh();
+
+        await(() -> refreshedA.get() == 1 && refreshedB.get() == 1);
+    }
+
+    @Test
+    void ignoresOwnerThatIsNotClusterMember() throws Exception {
+        join("http://node-a:8080", null);
+        ClusterCoordinator b = join("http://node-b:8080", null);
+
+        client(null).create(ROOT + "/queries/query/9", "http://elsewhere:8080".getBytes(UTF_8),
+                ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+
+        assertEquals(Optional.empty(), b.findRemoteOwner(ClusterCoordinator.QUERY, "9"));
+    }
+
+    @Test
+    void restrictsZnodesToClusterNodesWithDigest() throws Exception {
+        ClusterCoordinator a = join("http://node-a:8080", "celerity:secret");
+        ClusterCoordinator b = join("http://node-b:8080", "celerity:secret");
+        a.registerQuery(ClusterCoordinator.QUERY, "3");
+
+        assertEquals(Optional.of("http://node-a:8080"), b.findRemoteOwner(ClusterCoordinator.QUERY, "3"));
+        ZooKeeper outsider = client(null);
+        assertThrows(KeeperException.NoAuthException.class,
+                () -> outsider.setData(ROOT + "/queries/query/3", "http://elsewhere:8080".getBytes(UTF_8), -1));
+        assertThrows(KeeperException.NoAuthException.class,
+                () -> outsider.create(ROOT + "/queries/query/4", "http://elsewhere:8080".getBytes(UTF_8),
+                        ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+    }
+
+    /**
+     * Starts coordinator of a node and waits until it took part in election.
+     */
+    private ClusterCoordinator join(String nodeUrl, String digest) throws InterruptedException {
+        int expectedMembers = nodes.size() + 1;
+        ClusterCoordinator node = new ClusterCoordinator(server.getConnectString(), nodeUrl, SESSION_TIMEOUT_MS, ROOT, digest);
+        nodes.add(node);
+        await(() -> node.isClustered() && memberCount(node) == expectedMembers);
+        return node;
+    }
+
+    /**
+     * Expires session of node on server side, by closing it from a second client sharing its session.
+     */
+    private void expireSession(ClusterCoordinator node) throws Exception {
+        ZooKeeper zk = node.getZooKeeper();
+        ZooKeeper twin = new ZooKeeper(server.getConnectString(), SESSION_TIMEOUT_MS, event -> { },
+                zk.getSessionId(), zk.getSessionPasswd());
+        await(() -> twin.getState().isConnected());
+        twin.close();
+    }
+
+    private ZooKeeper client(String digest) throws Exception {
+        ZooKeeper client = new ZooKeeper(server.getConnectString(), SESSION_TIMEOUT_MS, event -> { });
+        clients.add(client);
+        if(digest != null) {
+            client.addAuthInfo("digest", digest.getBytes(UTF_8));
+        }
+        await(() -> client.getState().isConnected());
+        return client;
+    }
+
+    private static int memberCount(ClusterCoordinator node) {
+        try {
+            return node.getZooKeeper().getChildren(ROOT + "/leader", false).size();
+        } catch(KeeperException | InterruptedException e) {
+            return -1;
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while(!condition.getAsBoolean()) {
+            if(System.currentTimeMillis() > deadline) {
+                fail("Condition not met within " + WAIT_MS + " ms");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
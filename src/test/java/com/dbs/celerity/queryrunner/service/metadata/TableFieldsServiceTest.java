@@ -0,0 +1,103 @@
+package com.dbs.celerity.queryrunner.service.metadata;
+
+import com.dbs.celerity.queryrunner.model.TableFields;
+import com.netflix.config.ConfigurationManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TableFieldsServiceTest {
+    private MetaDataService metaDataService;
+    private TableFieldsService service;
+
+    @BeforeEach
+    void setUp() {
+        ConfigurationManager.getConfigInstance().setProperty("query.fields.batch.max", 3);
+        metaDataService = mock(MetaDataService.class);
+        when(metaDataService.getTableFields("hive", "sales", "orders")).thenReturn(Set.of("id", "amount"));
+        when(metaDataService.getTableFields("hive", "sales", "customers")).thenReturn(Set.of("id", "name"));
+        service = new TableFieldsService(metaDataService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        for(String name : List.of("query.fields.batch.max", "query.fields.batch.timeout.ms")) {
+            ConfigurationManager.getConfigInstance().clearProperty(name);
+        }
+    }
+
+    @Test
+    void looksUpDuplicatesOnceAndCachesPerUser() {
+        List<TableFields> answer = service.getTableFields("alice", List.of(table("orders"), table("customers"), table("orders")));
+        assertEquals(Set.of("id", "amount"), answer.get(0).getFields());
+        assertEquals(Set.of("id", "name"), answer.get(1).getFields());
+        assertEquals(Set.of("id", "amount"), answer.get(2).getFields());
+
+        service.getTableFields("alice", List.of(table("orders")));
+        verify(metaDataService, times(1)).getTableFields("hive", "sales", "orders");
+
+        service.getTableFields("bob", List.of(table("orders")));
+        verify(metaDataService, times(2)).getTableFields("hive", "sales", "orders");
+    }
+
+    @Test
+    void flagsFailedLookupWithoutFailingBatch() {
+        when(metaDataService.getTableFields("hive", "sales", "missing")).thenThrow(new IllegalStateException("no such table"));
+
+        List<TableFields> answer = service.getTableFields("alice", List.of(table("missing"), table("orders")));
+        assertTrue(answer.get(0).isError());
+        assertEquals(Collections.emptySet(), answer.get(0).getFields());
+        assertFalse(answer.get(1).isError());
+        assertEquals(Set.of("id", "amount"), answer.get(1).getFields());
+    }
+
+    @Test
+    void flagsTablesLeftWhenBatchTimesOut() {
+        service.getTableFields("alice", List.of(table("customers")));
+        ConfigurationManager.getConfigInstance().setProperty("query.fields.batch.timeout.ms", 50);
+        when(metaDataService.getTableFields("hive", "sales", "slow")).thenAnswer(invocation -> {
+            Thread.sleep(100);
+            return Set.of("id");
+        });
+
+        List<TableFields> answer = service.getTableFields("alice", List.of(table("slow"), table("orders"), table("customers")));
+        assertFalse(answer.get(0).isError());
+        assertTrue(answer.get(1).isError());
+        // cached tables are still answered
+        assertFalse(answer.get(2).isError());
+        verify(metaDataService, never()).getTableFields("hive", "sales", "orders");
+    }
+
+    @Test
+    void rejectsOversizedBatch() {
+        List<TableFields> tables = new ArrayList<>();
+        for(int i = 0; i < 4; i++) {
+            tables.add(table("orders"));
+        }
+        assertThrows(ResponseStatusException.class, () -> service.getTableFields("alice", tables));
+        verifyNoInteractions(metaDataService);
+    }
+
+    @Test
+    void rejectsIncompleteEntries() {
+        assertThrows(ResponseStatusException.class, () -> service.getTableFields("alice", List.of(table(" "))));
+        assertThrows(ResponseStatusException.class,
+                () -> service.getTableFields("alice", List.of(new TableFields(null, "sales", "orders", null))));
+        assertThrows(ResponseStatusException.class, () -> service.getTableFields("alice", Arrays.asList(table("orders"), null)));
+        verifyNoInteractions(metaDataService);
+    }
+
+    private static TableFields table(String name) {
+        return new TableFields("hive", "sales", name, null);
+    }
+}
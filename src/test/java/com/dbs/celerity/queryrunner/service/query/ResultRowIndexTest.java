@@ -0,0 +1,132 @@
+package com.dbs.celerity.queryrunner.service.query;
+
+import com.dbs.celerity.queryrunner.model.ResultWindow;
+import com.netflix.config.ConfigurationManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultRowIndexTest {
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void tearDown() {
+        ConfigurationManager.getConfigInstance().clearProperty("query.result.window.max-rows");
+    }
+
+    @Test
+    void spillsResultAndIndexTogether() throws IOException {
+        Path result = dir.resolve("query-1.csv");
+        try(OutputStream out = RowIndexingOutputStream.spill(result)) {
+            out.write("id,name\n1,a\n".getBytes(UTF_8));
+            assertFalse(Files.exists(result));
+            out.write("2,b\n".getBytes(UTF_8));
+        }
+
+        assertTrue(Files.exists(ResultRowIndex.indexPath(result)));
+        assertEquals(List.of(result.getFileName().toString(), ResultRowIndex.indexPath(result).getFileName().toString()),
+                fileNames());
+        ResultWindow window = ResultRowIndex.readWindow(result, 1, 10);
+        assertEquals(List.of("1,a", "2,b"), window.getRows());
+        assertEquals(3, window.getTotalRows());
+    }
+
+    @Test
+    void stripsCrlfLineEndings() throws IOException {
+        Path result = write("id,name\r\n1,a\r\n2,b\r\n");
+        assertEquals(List.of("id,name", "1,a", "2,b"), ResultRowIndex.readWindow(result, 0, 10).getRows());
+    }
+
+    @Test
+    void readsLastRowWithoutTrailingNewline() throws IOException {
+        Path result = write("id,name\n1,a\n2,b");
+        ResultWindow window = ResultRowIndex.readWindow(result, 2, 10);
+        assertEquals(List.of("2,b"), window.getRows());
+        assertEquals(3, window.getTotalRows());
+    }
+
+    @Test
+    void returnsEmptyWindowPastEnd() throws IOException {
+        Path result = write("id,name\n1,a\n");
+        ResultWindow window = ResultRowIndex.readWindow(result, 5, 10);
+        assertEquals(List.of(), window.getRows());
+        assertEquals(2, window.getOffset());
+        assertEquals(2, window.getTotalRows());
+        assertEquals(List.of(), ResultRowIndex.readWindow(write(""), 0, 10).getRows());
+    }
+
+    @Test
+    void capsLimitAtMaxRows() throws IOException {
+        ConfigurationManager.getConfigInstance().setProperty("query.result.window.max-rows", 2);
+        Path result = write("id,name\n1,a\n2,b\n3,c\n");
+        assertEquals(List.of("1,a", "2,b"), ResultRowIndex.readWindow(result, 1, Integer.MAX_VALUE).getRows());
+        assertEquals(List.of(), ResultRowIndex.readWindow(result, 1, -1).getRows());
+    }
+
+    @Test
+    void rebuildsIndexOfGrownResult() throws IOException {
+        Path result = write("id,name\n1,a\n");
+        assertEquals(2, ResultRowIndex.readWindow(result, 0, 10).getTotalRows());
+
+        Files.write(result, "id,name\n1,a\n2,b\n".getBytes(UTF_8));
+        // index no older than result, yet covering fewer bytes than it holds
+        Files.setLastModifiedTime(ResultRowIndex.indexPath(result), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        assertEquals(List.of("2,b"), ResultRowIndex.readWindow(result, 2, 10).getRows());
+    }
+
+    @Test
+    void rebuildsPartialIndex() throws IOException {
+        Path result = write("id,name\n1,a\n2,b\n");
+        ResultRowIndex.ensureIndex(result);
+        Path index = ResultRowIndex.indexPath(result);
+        byte[] bytes = Files.readAllBytes(index);
+        Files.write(index, Arrays.copyOf(bytes, bytes.length - 3));
+
+        ResultWindow window = ResultRowIndex.readWindow(result, 0, 10);
+        assertEquals(List.of("id,name", "1,a", "2,b"), window.getRows());
+        assertEquals(bytes.length, Files.size(index));
+    }
+
+    @Test
+    void publishesNothingWhenResultFailsToClose() throws IOException {
+        Path result = dir.resolve("query-2.csv");
+        OutputStream failing = new FilterOutputStream(OutputStream.nullOutputStream()) {
+            @Override
+            public void close() throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        RowIndexingOutputStream out = new RowIndexingOutputStream(failing, result);
+        out.write("id,name\n".getBytes(UTF_8));
+
+        assertThrows(IOException.class, out::close);
+        assertEquals(List.of(), fileNames());
+    }
+
+    private Path write(String content) throws IOException {
+        Path result = Files.createTempFile(dir, "query", ".csv");
+        Files.write(result, content.getBytes(UTF_8));
+        return result;
+    }
+
+    private List<String> fileNames() throws IOException {
+        try(Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+}
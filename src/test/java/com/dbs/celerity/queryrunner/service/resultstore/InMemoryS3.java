@@ -0,0 +1,93 @@
+package com.dbs.celerity.queryrunner.service.resultstore;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process stand-in for an S3-compatible store such as MinIO, keeping objects in memory and
+ * serving ranged GETs the way the real endpoint does. Every range requested is recorded.
+ */
+class InMemoryS3 extends AbstractAmazonS3 {
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final List<long[]> ranges = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public PutObjectResult putObject(String bucketName, String key, File file) {
+        try {
+            objects.put(bucketName + "/" + key, Files.readAllBytes(file.toPath()));
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new PutObjectResult();
+    }
+
+    @Override
+    public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(get(bucketName, key).length);
+        return metadata;
+    }
+
+    @Override
+    public S3Object getObject(GetObjectRequest request) {
+        byte[] content = get(request.getBucketName(), request.getKey());
+        long[] range = request.getRange();
+        int from = 0;
+        int to = content.length;
+        if(range != null) {
+            ranges.add(range.clone());
+            from = (int) range[0];
+            to = (int) Math.min(range[1] + 1, content.length);
+        }
+        S3Object object = new S3Object();
+        object.setBucketName(request.getBucketName());
+        object.setKey(request.getKey());
+        object.setObjectContent(new ByteArrayInputStream(Arrays.copyOfRange(content, from, to)));
+        return object;
+    }
+
+    @Override
+    public void deleteObject(String bucketName, String key) {
+        objects.remove(bucketName + "/" + key);
+    }
+
+    @Override
+    public boolean doesObjectExist(String bucketName, String key) {
+        return objects.containsKey(bucketName + "/" + key);
+    }
+
+    /**
+     * @return Ranges of every ranged GET so far, as inclusive [first, last] byte positions.
+     */
+    List<long[]> getRanges() {
+        return ranges;
+    }
+
+    Set<String> keys() {
+        return objects.keySet();
+    }
+
+    private byte[] get(String bucketName, String key) {
+        byte[] content = objects.get(bucketName + "/" + key);
+        if(content == null) {
+            AmazonServiceException e = new AmazonServiceException("The specified key does not exist.");
+            e.setStatusCode(404);
+            e.setErrorCode("NoSuchKey");
+            throw e;
+        }
+        return content;
+    }
+}
@@ -0,0 +1,241 @@
+package com.dbs.celerity.queryrunner.service.resultstore;
+
+import com.netflix.config.ConfigurationManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static com.dbs.celerity.queryrunner.service.resultstore.ResultStoreService.QUERY;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultStoreServiceTest {
+    private static final String BUCKET = "results";
+    private static final int MB = 1024 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private InMemoryS3 s3;
+    private ResultStoreService store;
+
+    @BeforeEach
+    void setUp() {
+        setProperty("resultstore.tier.bucket", BUCKET);
+        setProperty("resultstore.user.quota.mb", 1);
+        setProperty("resultstore.compress.after.minutes", 0);
+        setProperty("resultstore.tier.range-read.mb", 1);
+        s3 = new InMemoryS3();
+        store = newStore();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+        for(String name : List.of("resultstore.tier.bucket", "resultstore.user.quota.mb",
+                "resultstore.compress.after.minutes", "resultstore.tier.range-read.mb")) {
+            ConfigurationManager.getConfigInstance().clearProperty(name);
+        }
+    }
+
+    @Test
+    void compressesColdResultAndRestoresItOnRead() throws Exception {
+        byte[] content = randomBytes(64 * 1024);
+        Path result = write("query-1.csv", content);
+        store.register("alice", QUERY, 1, result);
+
+        compactCold();
+        assertFalse(Files.exists(result));
+        assertTrue(Files.exists(gzip(result)));
+
+        store.ensureLocal("alice", QUERY, 1);
+        assertArrayEquals(content, Files.readAllBytes(result));
+        assertFalse(Files.exists(gzip(result)));
+        assertTrue(s3.keys().isEmpty());
+    }
+
+    @Test
+    void tiersLeastRecentlyUsedResultOverQuotaAndRestoresItWithRangedGets() throws Exception {
+        byte[] content = randomBytes(5 * MB / 2);
+        Path old = write("query-1.csv", content);
+        store.register("alice", QUERY, 1, old);
+        Thread.sleep(5);
+        Path recent = write("query-2.csv", randomBytes(1024));
+        store.register("alice", QUERY, 2, recent);
+
+        compactCold();
+        assertEquals(Collections.singleton(BUCKET + "/results/alice/query-1.csv.gz"), s3.keys());
+        assertFalse(Files.exists(old));
+        assertFalse(Files.exists(gzip(old)));
+        assertTrue(Files.exists(gzip(recent)));
+
+        store.ensureLocal("alice", QUERY, 1);
+        assertArrayEquals(content, Files.readAllBytes(old));
+        List<long[]> ranges = s3.getRanges();
+        assertEquals(3, ranges.size());
+        assertArrayEquals(new long[]{0, MB - 1}, ranges.get(0));
+        assertArrayEquals(new long[]{MB, 2 * MB - 1}, ranges.get(1));
+        assertEquals(2 * MB, ranges.get(2)[0]);
+        assertTrue(s3.keys().isEmpty());
+    }
+
+    @Test
+    void keepsMostRecentResultLocalEvenOverQuota() throws Exception {
+        Path result = write("query-1.csv", randomBytes(2 * MB));
+        store.register("alice", QUERY, 1, result);
+
+        compactCold();
+        assertTrue(s3.keys().isEmpty());
+        assertTrue(Files.exists(gzip(result)));
+    }
+
+    @Test
+    void leavesResultsReadWithinCompressWindowLocal() throws Exception {
+        setProperty("resultstore.compress.after.minutes", 60);
+        Path first = write("query-1.csv", randomBytes(2 * MB));
+        store.register("alice", QUERY, 1, first);
+        Path second = write("query-2.csv", randomBytes(2 * MB));
+        store.register("alice", QUERY, 2, second);
+
+        store.compact();
+        assertTrue(s3.keys().isEmpty());
+        assertTrue(Files.exists(first));
+        assertTrue(Files.exists(second));
+    }
+
+    @Test
+    void restoresCompressedAndTieredResultsAfterRestart() throws Exception {
+        byte[] oldContent = randomBytes(2 * MB);
+        byte[] recentContent = randomBytes(1024);
+        Path old = write("query-1.csv", oldContent);
+        store.register("alice", QUERY, 1, old);
+        Thread.sleep(5);
+        Path recent = write("query-2.csv", recentContent);
+        store.register("alice", QUERY, 2, recent);
+        compactCold();
+        assertFalse(s3.keys().isEmpty());
+
+        store.shutdown();
+        store = newStore();
+
+        store.ensureLocal("alice", QUERY, 1);
+        store.ensureLocal("alice", QUERY, 2);
+        assertArrayEquals(oldContent, Files.readAllBytes(old));
+        assertArrayEquals(recentContent, Files.readAllBytes(recent));
+        assertTrue(s3.keys().isEmpty());
+    }
+
+    @Test
+    void doesNotRestoreResultOfAnotherUser() throws Exception {
+        Path result = write("query-1.csv", randomBytes(1024));
+        store.register("alice", QUERY, 1, result);
+        compactCold();
+
+        store.ensureLocal("bob", QUERY, 1);
+        assertFalse(Files.exists(result));
+        assertTrue(Files.exists(gzip(result)));
+    }
+
+    @Test
+    void removeDeletesEveryStoredCopy() throws Exception {
+        Path old = write("query-1.csv", randomBytes(2 * MB));
+        store.register("alice", QUERY, 1, old);
+        Thread.sleep(5);
+        Path recent = write("query-2.csv", randomBytes(1024));
+        store.register("alice", QUERY, 2, recent);
+        compactCold();
+
+        store.remove(QUERY, 1);
+        store.remove(QUERY, 2);
+        assertTrue(s3.keys().isEmpty());
+        assertFalse(Files.exists(gzip(recent)));
+        try(var state = Files.list(dir.resolve("state"))) {
+            assertEquals(0, state.count());
+        }
+    }
+
+    @Test
+    void tracksSpilledResultBeforeItIsRead() throws Exception {
+        byte[] content = randomBytes(64 * 1024);
+        Path result = dir.resolve("query-3.csv");
+        try(OutputStream out = store.spill("alice", QUERY, 3, result)) {
+            out.write(content);
+        }
+        assertArrayEquals(content, Files.readAllBytes(result));
+
+        compactCold();
+        assertFalse(Files.exists(result));
+        assertTrue(Files.exists(gzip(result)));
+        store.ensureLocal("alice", QUERY, 3);
+        assertArrayEquals(content, Files.readAllBytes(result));
+    }
+
+    @Test
+    void followsResultToNewPathAndPersistsLastAccess() throws Exception {
+        Path old = write("query-1.csv", randomBytes(1024));
+        store.register("alice", QUERY, 1, old);
+        long registered = lastAccess(QUERY + "-1");
+        compactCold();
+        assertTrue(Files.exists(gzip(old)));
+
+        Path moved = write("query-1-moved.csv", randomBytes(1024));
+        store.register("alice", QUERY, 1, moved);
+        assertFalse(Files.exists(gzip(old)));
+        assertTrue(lastAccess(QUERY + "-1") > registered);
+
+        store.shutdown();
+        store = newStore();
+        store.ensureLocal("alice", QUERY, 1);
+        compactCold();
+        assertFalse(Files.exists(moved));
+        assertTrue(Files.exists(gzip(moved)));
+    }
+
+    private long lastAccess(String resultId) throws IOException {
+        Properties properties = new Properties();
+        try(InputStream in = Files.newInputStream(dir.resolve("state").resolve(resultId + ".properties"))) {
+            properties.load(in);
+        }
+        return Long.parseLong(properties.getProperty("lastAccess"));
+    }
+
+    private ResultStoreService newStore() {
+        return new ResultStoreService(dir.resolve("state"), s3);
+    }
+
+    /**
+     * Compacts once every registered result is older than the (zero) compress window.
+     */
+    private void compactCold() throws InterruptedException {
+        Thread.sleep(5);
+        store.compact();
+    }
+
+    private Path write(String name, byte[] content) throws IOException {
+        return Files.write(dir.resolve(name), content);
+    }
+
+    private static Path gzip(Path result) {
+        return result.resolveSibling(result.getFileName() + ".gz");
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void setProperty(String name, Object value) {
+        ConfigurationManager.getConfigInstance().setProperty(name, value);
+    }
+}